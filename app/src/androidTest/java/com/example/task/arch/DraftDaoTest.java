@@ -0,0 +1,89 @@
+package com.example.task.arch;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the autosaves of a task keep its last draft only,
+ * also when a burst of them goes through the writer.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DraftDaoTest {
+
+    private static final int TASK_ID = 7;
+
+    private TaskRoomDatabase mDb;
+    private DraftDao mDao;
+
+    @Before
+    public void createDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, TaskRoomDatabase.class).build();
+        mDao = mDb.draftDao();
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+    }
+
+    @Test
+    public void put_replacesTheDraftOfTheTask() {
+        mDao.put(new TaskDraft(TASK_ID, "Ta", "", 0, 100));
+        mDao.put(new TaskDraft(TaskDraft.NEW_TASK_ID, "New", "Details", 5000, 150));
+        mDao.put(new TaskDraft(TASK_ID, "Task", "Details", 0, 200));
+
+        TaskDraft draft = mDao.get(TASK_ID);
+        assertEquals("Task", draft.getTask());
+        assertEquals("Details", draft.getDetails());
+        assertNull(draft.toTask().getDate());
+        assertEquals(TASK_ID, mDao.getLatest().getTaskId());
+
+        assertEquals(1, mDao.delete(TASK_ID));
+        assertNull(mDao.get(TASK_ID));
+        TaskDraft latest = mDao.getLatest();
+        assertEquals(TaskDraft.NEW_TASK_ID, latest.getTaskId());
+        assertEquals(5000, latest.toTask().getDate().getTime());
+    }
+
+    @Test
+    public void burstOfAutosaves_leavesTheLastDraft() throws Exception {
+        TaskWriteExecutor writer = new TaskWriteExecutor(mDb);
+        Future<Void> last = null;
+        String text = "";
+        for (int i = 0; i < 100; i++) {
+            text += 'a';
+            final TaskDraft draft = new TaskDraft(TASK_ID, text, null, 0, i);
+            last = writer.submit(new TaskWriteExecutor.Write<Void>() {
+                @Override
+                public Void run(@NonNull TaskDao dao) {
+                    mDao.put(draft);
+                    return null;
+                }
+            });
+        }
+        last.get();
+
+        assertEquals(text, mDao.get(TASK_ID).getTask());
+        assertEquals(TASK_ID, mDao.getLatest().getTaskId());
+    }
+
+    @Test
+    public void emptyDraft_isEmpty() {
+        assertTrue(new TaskDraft(TASK_ID, "", null, 1000, 0).isEmpty());
+        assertFalse(new TaskDraft(TASK_ID, "", "Details", 0, 0).isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.task.arch;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that repeated writes of a document leave a single pending operation,
+ * and that an acknowledged revision does not drop a newer write.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OutboxDaoTest {
+
+    private static final String PATH = "user/uid";
+
+    private TaskRoomDatabase mDb;
+    private OutboxDao mDao;
+
+    @Before
+    public void createDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, TaskRoomDatabase.class).build();
+        mDao = mDb.outboxDao();
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+    }
+
+    @Test
+    public void enqueue_coalescesWritesOfADocument() throws Exception {
+        mDao.enqueue(PATH, "{\"name\":\"A\",\"phone\":\"1\"}", true, 100);
+        mDao.retryLater(PATH, 0, 5000);
+        mDao.enqueue(PATH, "{\"name\":\"B\"}", true, 200);
+
+        assertEquals(1, mDao.getDue(Long.MAX_VALUE, 10).size());
+        OutboxOp op = mDao.get(PATH);
+        JSONObject data = new JSONObject(op.getData());
+        assertEquals("B", data.getString("name"));
+        assertEquals("1", data.getString("phone"));
+        assertTrue(op.isMerge());
+        assertEquals(1, op.getRevision());
+        // The first write is the one waiting, and its backoff goes on.
+        assertEquals(100, op.getCreatedAt());
+        assertEquals(1, op.getAttempts());
+        assertTrue(mDao.getDue(4999, 10).isEmpty());
+
+        // A full write replaces the pending fields.
+        mDao.enqueue(PATH, "{\"name\":\"C\"}", false, 300);
+        op = mDao.get(PATH);
+        assertFalse(op.isMerge());
+        assertFalse(new JSONObject(op.getData()).has("phone"));
+    }
+
+    @Test
+    public void deleteSent_keepsANewerRevision() {
+        mDao.enqueue(PATH, "{\"name\":\"A\"}", true, 100);
+        OutboxOp sent = mDao.get(PATH);
+        mDao.enqueue(PATH, "{\"name\":\"B\"}", true, 200);
+
+        assertEquals(0, mDao.deleteSent(PATH, sent.getRevision()));
+        assertEquals(1, mDao.deleteSent(PATH, sent.getRevision() + 1));
+        assertNull(mDao.getNextAttemptAt());
+    }
+
+    @Test
+    public void retryLater_leavesANewerRevisionDue() {
+        mDao.enqueue(PATH, "{\"name\":\"A\"}", true, 100);
+        OutboxOp failed = mDao.get(PATH);
+        mDao.enqueue(PATH, "{\"name\":\"B\"}", true, 200);
+
+        // The failure of the older revision does not delay the newer one.
+        assertEquals(0, mDao.retryLater(PATH, failed.getRevision(), 5000));
+        OutboxOp op = mDao.get(PATH);
+        assertEquals(0, op.getAttempts());
+        assertEquals(1, mDao.getDue(100, 10).size());
+    }
+}
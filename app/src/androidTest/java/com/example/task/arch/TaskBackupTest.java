@@ -0,0 +1,154 @@
+package com.example.task.arch;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exports a database to a JSON Lines file and imports it in another one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskBackupTest {
+
+    private static final int ROW_COUNT = 20000;
+
+    private Context mContext;
+    private TaskRoomDatabase mSource;
+    private TaskRoomDatabase mTarget;
+    private File mFile;
+
+    @Before
+    public void createDbs() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mSource = Room.inMemoryDatabaseBuilder(mContext, TaskRoomDatabase.class).build();
+        mTarget = Room.inMemoryDatabaseBuilder(mContext, TaskRoomDatabase.class).build();
+        mFile = new File(mContext.getCacheDir(), "backup_test.jsonl");
+        mSource.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    Task task = new Task("Task " + i, i % 3 == 0 ? null : "Details " + i,
+                            i % 10 == 0 ? null : new Date(i * 60000L));
+                    task.markChanged(i + 1);
+                    if (i % 7 == 0) {
+                        task.setCompleted(true);
+                        task.setCompletedAt(new Date(i));
+                    }
+                    mSource.taskDao().insert(task);
+                }
+            }
+        });
+    }
+
+    @After
+    public void closeDbs() {
+        mSource.close();
+        mTarget.close();
+        mFile.delete();
+    }
+
+    @Test
+    public void exportThenImport_keepsEveryTask() throws IOException {
+        final long[] lastProgress = new long[2];
+        TaskBackup.Progress progress = new TaskBackup.Progress() {
+            @Override
+            public void onProgress(long done, long total) {
+                assertTrue(done > lastProgress[0]);
+                lastProgress[0] = done;
+                lastProgress[1] = total;
+            }
+        };
+        try (OutputStream out = new FileOutputStream(mFile)) {
+            assertEquals(ROW_COUNT, backup(mSource).export(out, progress, null));
+        }
+        assertEquals(ROW_COUNT, lastProgress[0]);
+        assertEquals(ROW_COUNT, lastProgress[1]);
+
+        try (InputStream in = new FileInputStream(mFile)) {
+            assertEquals(ROW_COUNT, backup(mTarget).importTasks(in, null, null));
+        }
+        assertEquals(ROW_COUNT, mTarget.taskDao().getTaskCount());
+
+        List<Task> source = mSource.taskDao().getAllTasksAfter(0, ROW_COUNT);
+        for (Task task : source) {
+            Task copy = mTarget.taskDao().getTaskByUuid(task.getUuid());
+            assertTrue(task.hasSameContent(copy));
+            assertEquals(task.getContentHash(), copy.getContentHash());
+            assertEquals(task.isCompleted(), copy.isCompleted());
+            assertEquals(task.getCompletedAt(), copy.getCompletedAt());
+            assertEquals(task.getTaskHlc(), copy.getTaskHlc());
+            assertEquals(task.getUpdatedAt(), copy.getUpdatedAt());
+            assertTrue(copy.isDirty());
+        }
+
+        // A second import finds every task already there.
+        try (InputStream in = new FileInputStream(mFile)) {
+            assertEquals(0, backup(mTarget).importTasks(in, null, null));
+        }
+        assertEquals(ROW_COUNT, mTarget.taskDao().getTaskCount());
+    }
+
+    @Test
+    public void import_stopsWhenCanceled() throws IOException {
+        try (OutputStream out = new FileOutputStream(mFile)) {
+            backup(mSource).export(out, null, null);
+        }
+        final CancellationSignal signal = new CancellationSignal();
+        TaskBackup.Progress progress = new TaskBackup.Progress() {
+            @Override
+            public void onProgress(long done, long total) {
+                signal.cancel();
+            }
+        };
+        try (InputStream in = new FileInputStream(mFile)) {
+            backup(mTarget).importTasks(in, progress, signal);
+            fail();
+        } catch (OperationCanceledException expected) {
+            // The first chunk was kept.
+            assertEquals(TaskBackup.CHUNK_SIZE, mTarget.taskDao().getTaskCount());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void import_rejectsOtherFiles() throws IOException {
+        byte[] other = "{\"name\":\"not a backup\"}\n".getBytes(StandardCharsets.UTF_8);
+        backup(mTarget).importTasks(new ByteArrayInputStream(other), null, null);
+    }
+
+    @Test
+    public void export_ofAnEmptyDatabase_isOnlyTheHeader() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, backup(mTarget).export(out, null, null));
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(1, text.split("\n").length);
+        assertEquals(0, backup(mTarget).importTasks(
+                new ByteArrayInputStream(out.toByteArray()), null, null));
+    }
+
+    private static TaskBackup backup(TaskRoomDatabase db) {
+        return new TaskBackup(db.taskDao(), new TaskWriteExecutor(db), new HybridLogicalClock());
+    }
+}
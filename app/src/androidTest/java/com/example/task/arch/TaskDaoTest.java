@@ -0,0 +1,77 @@
+package com.example.task.arch;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the queries of TaskDao that take a list of ids, at the size
+ * of a chunk of bound parameters, and the rows written by the bulk update.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskDaoTest {
+
+    private TaskRoomDatabase mDb;
+    private TaskDao mDao;
+
+    @Before
+    public void createDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, TaskRoomDatabase.class).build();
+        mDao = mDb.taskDao();
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+    }
+
+    @Test
+    public void setCompleted_aFullChunkOfIds() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < TaskDao.MAX_BIND_PARAMETERS; i++) {
+            tasks.add(new Task("Task " + i, null, null));
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (long id : mDao.insert(tasks)) {
+            ids.add((int) id);
+        }
+
+        assertEquals(ids.size(), mDao.setCompleted(ids, true, 1000L, 1));
+        assertTrue(mDao.getTask(ids.get(ids.size() - 1)).isCompleted());
+
+        // Undone, as from the snackbar.
+        assertEquals(ids.size(), mDao.setCompleted(ids, false, null, 2));
+        assertFalse(mDao.getTask(ids.get(0)).isCompleted());
+    }
+
+    @Test
+    public void update_writesTheHashOfTheNewContent() {
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(new Task("Task", "Details", null));
+        int id = mDao.insert(tasks).get(0).intValue();
+
+        Task task = mDao.getTask(id);
+        task.setDetails("Other details");
+        task.setDate(new Date(1000L));
+        assertEquals(1, mDao.update(Collections.singletonList(task)));
+
+        Task stored = mDao.getTask(id);
+        assertEquals(Task.computeContentHash("Task", "Other details", new Date(1000L)),
+                stored.getContentHash());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.task.arch;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the times of a task only increase, also when a stored time
+ * is ahead of the clock.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskHlcTest {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private TaskRoomDatabase mDb;
+    private TaskDao mDao;
+    private long mAhead;
+    private int mId;
+
+    @Before
+    public void createDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, TaskRoomDatabase.class).build();
+        mDao = mDb.taskDao();
+
+        mAhead = HybridLogicalClock.fromMillis(System.currentTimeMillis() + DAY_MILLIS);
+        Task task = new Task("Task", "Details", null);
+        task.markChanged(mAhead);
+        mId = (int) mDao.insert(task);
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+    }
+
+    @Test
+    public void seededClock_isPastTheStoredTimes() {
+        assertEquals(mAhead, mDao.getLatestHlc());
+
+        HybridLogicalClock clock = new HybridLogicalClock();
+        clock.observe(mDao.getLatestHlc());
+        assertTrue(clock.now() > mAhead);
+    }
+
+    @Test
+    public void updates_withAClockBehind_moveTheTimesForward() {
+        HybridLogicalClock clock = new HybridLogicalClock();
+        Task edited = new Task("Edited", "Details", null);
+        edited.setId(mId);
+        assertEquals(1, mDao.updateContent(edited, clock.now()));
+
+        Task updated = mDao.getTask(mId);
+        assertTrue(updated.getTaskHlc() > mAhead);
+        assertTrue(updated.getUpdatedAt() > mAhead);
+        // Unchanged, so it keeps its time.
+        assertEquals(mAhead, updated.getDetailsHlc());
+
+        assertEquals(1, mDao.setCompleted(Collections.singletonList(mId), true,
+                System.currentTimeMillis(), clock.now()));
+        Task completed = mDao.getTask(mId);
+        assertTrue(completed.getCompletedHlc() > mAhead);
+        assertTrue(completed.getUpdatedAt() > updated.getUpdatedAt());
+    }
+}
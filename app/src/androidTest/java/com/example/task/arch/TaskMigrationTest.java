@@ -0,0 +1,181 @@
+package com.example.task.arch;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upgrades a real database file created with the version 1 schema
+ * and checks that every task survives, then runs the chunked backfill.
+ *
+ * The upgraded database is validated by MigrationTestHelper against the
+ * schema the build exports to app/schemas. The version 1 file is created
+ * with the statement Room generated then.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskMigrationTest {
+
+    private static final String DB_NAME = "migration_test.db";
+    private static final int ROW_COUNT = 2000;
+
+    @Rule
+    public MigrationTestHelper mHelper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            TaskRoomDatabase.class.getCanonicalName(),
+            new FrameworkSQLiteOpenHelperFactory());
+
+    private Context mContext;
+    private TaskRoomDatabase mDb;
+
+    @Before
+    public void createVersion1() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DB_NAME);
+
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(
+                SupportSQLiteOpenHelper.Configuration.builder(mContext)
+                        .name(DB_NAME)
+                        .callback(new SupportSQLiteOpenHelper.Callback(1) {
+                            @Override
+                            public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                                // The schema Room generated for version 1.
+                                db.execSQL("CREATE TABLE IF NOT EXISTS `task_table` ("
+                                        + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                                        + "`task` TEXT, `details` TEXT, `date` INTEGER)");
+                            }
+
+                            @Override
+                            public void onUpgrade(@NonNull SupportSQLiteDatabase db,
+                                                  int oldVersion, int newVersion) {
+                            }
+                        })
+                        .build());
+        SupportSQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ROW_COUNT; i++) {
+                ContentValues values = new ContentValues();
+                values.put("task", "Task " + i);
+                values.put("details", "Details of task number" + i);
+                if (i % 5 != 0) {
+                    values.put("date", i * 60000L);
+                }
+                db.insert("task_table", SQLiteDatabase.CONFLICT_ABORT, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        helper.close();
+    }
+
+    @After
+    public void deleteDb() {
+        if (mDb != null) {
+            mDb.close();
+        }
+        mContext.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void migrateFrom1_keepsEveryTask() throws IOException {
+        mDb = openMigrated();
+        List<Task> tasks = mDb.taskDao().getFirstTasks(ROW_COUNT + 1);
+        assertEquals(ROW_COUNT, tasks.size());
+        // Undated tasks first.
+        assertNull(tasks.get(0).getDate());
+        assertNotNull(tasks.get(ROW_COUNT - 1).getDate());
+    }
+
+    @Test
+    public void backfill_indexesEveryTaskOnce() throws IOException {
+        mDb = openMigrated();
+        final SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        TaskDao dao = mDb.taskDao();
+
+        // Before the backfill only new or changed rows are searchable,
+        // the triggers Room created after the migrations were replaced.
+        assertTrue(dao.search("Details*", 10).isEmpty());
+        assertEquals(0, countTriggers(db, "room_fts_content_sync_%"));
+        assertEquals(4, countTriggers(db, "task_fts_backfill_%"));
+
+        // Edit a row the backfill has not reached yet, and add a new one.
+        Task edited = dao.getFirstTasks(ROW_COUNT).get(ROW_COUNT - 1);
+        dao.update(new Task(edited.getId(), "Renamed", edited.getDetails(), edited.getDate()));
+        dao.insert(new Task("Added", "After the upgrade", null));
+        assertEquals(1, dao.search("Added", 10).size());
+
+        int chunks = 0;
+        while (runChunk(db)) {
+            chunks++;
+        }
+        assertTrue(chunks > ROW_COUNT / TaskBackfill.CHUNK_SIZE);
+
+        assertEquals(ROW_COUNT, dao.search("number*", ROW_COUNT + 1).size());
+        assertEquals(1, dao.search("Renamed", 10).size());
+        assertEquals(1, dao.search("Added", 10).size());
+        for (Task task : dao.getFirstTasks(ROW_COUNT + 1)) {
+            assertEquals(Task.computeContentHash(task.getTask(), task.getDetails(),
+                    task.getDate()), task.getContentHash());
+        }
+
+        // The sync triggers are back to plain Room ones.
+        assertEquals(4, countTriggers(db, "room_fts_content_sync_%"));
+        assertEquals(0, countTriggers(db, "task_fts_backfill_%"));
+        dao.delete(dao.search("Renamed", 10).get(0).task);
+        assertTrue(dao.search("Renamed", 10).isEmpty());
+    }
+
+    private TaskRoomDatabase openMigrated() throws IOException {
+        // Runs every migration, then compares the tables with the exported schema
+        // of the current version. The task_backfill table is not an entity, it stays
+        // until the backfills are done, so tables missing from the schema are allowed.
+        mHelper.runMigrationsAndValidate(DB_NAME, TaskRoomDatabase.VERSION, false,
+                TaskMigrations.ALL).close();
+        TaskRoomDatabase db = TaskRoomDatabase.createBuilder(mContext, DB_NAME,
+                TaskRoomDatabase.StorageConfig.DEFAULT)
+                .allowMainThreadQueries()
+                .build();
+        db.getOpenHelper().getWritableDatabase();
+        return db;
+    }
+
+    private static int countTriggers(SupportSQLiteDatabase db, String pattern) {
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM sqlite_master "
+                + "WHERE type = 'trigger' AND name LIKE ?", new Object[]{pattern})) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+    private boolean runChunk(SupportSQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            boolean pending = TaskBackfill.runChunk(db);
+            db.setTransactionSuccessful();
+            return pending;
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
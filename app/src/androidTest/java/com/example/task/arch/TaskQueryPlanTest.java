@@ -0,0 +1,266 @@
+package com.example.task.arch;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the list queries are answered from the (completed, date, id) index
+ * instead of sorting the table, and logs how long a page takes with both plans.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskQueryPlanTest {
+
+    private static final String TAG = "TaskQueryPlanTest";
+    private static final int ROW_COUNT = 10000;
+    private static final int PAGE_SIZE = 30;
+
+    private static final String PAGE_QUERY =
+            "SELECT * FROM task_table WHERE completed = 0 ORDER BY date ASC, id ASC LIMIT "
+                    + PAGE_SIZE;
+
+    private TaskRoomDatabase mDb;
+    private TaskDao mDao;
+
+    @Before
+    public void createDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, TaskRoomDatabase.class).build();
+        mDao = mDb.taskDao();
+        mDb.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    // Every tenth task has no date.
+                    Date date = i % 10 == 0 ? null : new Date((i * 7919L) % 100000L);
+                    mDao.insert(new Task("Task " + i, "Details " + i, date));
+                }
+            }
+        });
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+    }
+
+    @Test
+    public void pageQuery_usesIndexInsteadOfTempBTree() {
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+
+        String indexedPlan = queryPlan(db, PAGE_QUERY);
+        long indexedNanos = timePage(db);
+        assertTrue(indexedPlan, indexedPlan.contains("index_task_table_completed_date_id"));
+        assertFalse(indexedPlan, indexedPlan.contains("TEMP B-TREE"));
+
+        db.execSQL("DROP INDEX index_task_table_completed_date_id");
+        String sortedPlan = queryPlan(db, PAGE_QUERY);
+        long sortedNanos = timePage(db);
+        assertTrue(sortedPlan, sortedPlan.contains("TEMP B-TREE"));
+
+        Log.i(TAG, "Index plan: " + indexedPlan + " (" + indexedNanos / 1000 + " us)");
+        Log.i(TAG, "Sort plan: " + sortedPlan + " (" + sortedNanos / 1000 + " us)");
+    }
+
+    @Test
+    public void keysetQuery_usesIndexSeek() {
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        String plan = queryPlan(db, "SELECT * FROM task_table WHERE completed = 0 AND date >= 500 AND "
+                + "(date > 500 OR id > 10) ORDER BY date ASC, id ASC LIMIT " + PAGE_SIZE);
+        assertTrue(plan, plan.contains("SEARCH"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void reminderQueries_seekTheIndex() {
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        String plan = queryPlan(db, "SELECT MIN(date) FROM task_table "
+                + "WHERE completed = 0 AND date > 500");
+        assertTrue(plan, plan.contains("SEARCH"));
+
+        long next = mDao.getNextDueDate(500);
+        List<Task> due = mDao.getTasksDue(500, next, PAGE_SIZE);
+        assertFalse(due.isEmpty());
+        for (Task task : due) {
+            assertEquals(next, task.getDate().getTime());
+        }
+        assertNull(mDao.getNextDueDate(100000));
+    }
+
+    @Test
+    public void widgetSummaries_matchTheFirstDatedTasks() {
+        List<TaskListItem> items = mDao.getFirstDatedListItems(PAGE_SIZE);
+        List<TaskSummary> summaries = mDao.getDueSummaries(PAGE_SIZE);
+        assertEquals(items.size(), summaries.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).id, summaries.get(i).id);
+            assertEquals(items.get(i).task, summaries.get(i).task);
+            assertEquals(items.get(i).date.getTime(), summaries.get(i).date);
+        }
+    }
+
+    @Test
+    public void listItems_matchTheFirstTasks_withAPreviewOfLongDetails() {
+        StringBuilder longDetails = new StringBuilder();
+        while (longDetails.length() <= TaskListItem.PREVIEW_LENGTH) {
+            longDetails.append("A long note. ");
+        }
+        Task first = mDao.getFirstTasks(1).get(0);
+        first.setDetails(longDetails.toString());
+        mDao.update(first);
+
+        List<Task> tasks = mDao.getFirstTasks(PAGE_SIZE);
+        List<TaskListItem> items = mDao.getFirstListItems(PAGE_SIZE);
+        assertEquals(tasks.size(), items.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals(tasks.get(i).getId(), items.get(i).id);
+            assertEquals(tasks.get(i).getTask(), items.get(i).task);
+            assertEquals(tasks.get(i).getDate(), items.get(i).date);
+        }
+        assertEquals(longDetails.substring(0, TaskListItem.PREVIEW_LENGTH) + "\u2026",
+                items.get(0).preview);
+        assertEquals(tasks.get(1).getDetails(), items.get(1).preview);
+        assertEquals(longDetails.toString(), mDao.getTask(first.getId()).getDetails());
+    }
+
+    @Test
+    public void keysetPages_coverEveryTaskOnceInOrder() {
+        TaskListItem previous = null;
+        int count = 0;
+        List<TaskListItem> page = TaskKeyset.after(mDao, null, PAGE_SIZE);
+        while (!page.isEmpty()) {
+            for (TaskListItem item : page) {
+                if (previous != null) {
+                    assertTrue(compare(previous, item) < 0);
+                }
+                previous = item;
+                count++;
+            }
+            page = TaskKeyset.after(mDao, previous, PAGE_SIZE);
+        }
+        assertEquals(ROW_COUNT, count);
+    }
+
+    @Test
+    public void keysetPages_walkBackwardsToTheStart() {
+        List<TaskListItem> all = mDao.getFirstListItems(ROW_COUNT);
+        TaskListItem anchor = all.get(all.size() - 1);
+        int count = 1;
+        List<TaskListItem> page = TaskKeyset.before(mDao, anchor, PAGE_SIZE);
+        while (!page.isEmpty()) {
+            for (TaskListItem item : page) {
+                assertTrue(compare(item, anchor) < 0);
+                anchor = item;
+                count++;
+            }
+            page = TaskKeyset.before(mDao, anchor, PAGE_SIZE);
+        }
+        assertEquals(ROW_COUNT, count);
+    }
+
+    @Test
+    public void search_ranksTheCandidatesBeforeTheLimit() {
+        // Matches in its title too, and is inserted last.
+        long id = mDao.insert(new Task("Details", "Details", null));
+
+        List<TaskSearchResult> results = mDao.search("Details*", 1);
+        assertEquals(1, results.size());
+        assertEquals(id, results.get(0).task.getId());
+        assertEquals(PAGE_SIZE, mDao.search("Details*", PAGE_SIZE).size());
+    }
+
+    @Test
+    public void searchCandidates_readInDocidOrder() {
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        // A prefix matching every task stops after the candidates, without a sort.
+        String plan = queryPlan(db, "SELECT task_fts.rowid FROM task_fts "
+                + "JOIN task_table ON task_table.id = task_fts.rowid "
+                + "WHERE task_fts MATCH 'T*' AND task_table.completed = 0 "
+                + "ORDER BY task_fts.rowid DESC LIMIT " + TaskDao.SEARCH_CANDIDATES);
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void completedTasks_leaveTheListUntilPurged() {
+        List<Integer> ids = new ArrayList<>();
+        for (Task task : mDao.getFirstTasks(PAGE_SIZE)) {
+            ids.add(task.getId());
+        }
+        long now = System.currentTimeMillis();
+        assertEquals(PAGE_SIZE, mDao.setCompleted(ids, true, now, now));
+        assertFalse(ids.contains(mDao.getFirstTasks(1).get(0).getId()));
+
+        // Not yet old enough.
+        assertEquals(0, mDao.purgeCompleted(now, PAGE_SIZE));
+        // Undone, then completed again.
+        assertEquals(PAGE_SIZE, mDao.setCompleted(ids, false, null, now));
+        assertEquals(ids.get(0).intValue(), mDao.getFirstTasks(1).get(0).getId());
+        mDao.setCompleted(ids, true, now, now);
+
+        assertEquals(PAGE_SIZE - 1, mDao.purgeCompleted(now + 1, PAGE_SIZE - 1));
+        assertEquals(1, mDao.purgeCompleted(now + 1, PAGE_SIZE));
+        assertEquals(ROW_COUNT - PAGE_SIZE, mDao.getTasks(allIds()).size());
+    }
+
+    private List<Integer> allIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; id <= ROW_COUNT; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static int compare(TaskListItem a, TaskListItem b) {
+        if (a.date == null && b.date != null) {
+            return -1;
+        }
+        if (a.date != null && b.date == null) {
+            return 1;
+        }
+        if (a.date != null) {
+            int byDate = a.date.compareTo(b.date);
+            if (byDate != 0) {
+                return byDate;
+            }
+        }
+        return Integer.compare(a.id, b.id);
+    }
+
+    private static String queryPlan(SupportSQLiteDatabase db, String sql) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private static long timePage(SupportSQLiteDatabase db) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        try (Cursor cursor = db.query(PAGE_QUERY)) {
+            while (cursor.moveToNext()) {
+                cursor.getLong(0);
+            }
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.task.arch;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a failing write of a batch only loses that write.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskWriteExecutorTest {
+
+    private TaskRoomDatabase mDb;
+    private TaskWriteExecutor mWriter;
+
+    @Before
+    public void createDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, TaskRoomDatabase.class).build();
+        mWriter = new TaskWriteExecutor(mDb);
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+    }
+
+    @Test
+    public void failingWrite_betweenTwoGoodOnes_keepsTheGoodOnes() throws Exception {
+        // Holds the writer, so the next three writes are drained as one batch.
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<Void> blocker = mWriter.submit(new TaskWriteExecutor.Write<Void>() {
+            @Override
+            public Void run(@NonNull TaskDao dao) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            }
+        });
+
+        Future<Long> first = mWriter.submit(insert("First"));
+        Future<Long> failing = mWriter.submit(new TaskWriteExecutor.Write<Long>() {
+            @Override
+            public Long run(@NonNull TaskDao dao) {
+                dao.insert(new Task("Failing", null, null));
+                throw new IllegalStateException("Failing write");
+            }
+        });
+        Future<Long> second = mWriter.submit(insert("Second"));
+        release.countDown();
+        blocker.get();
+
+        long firstId = first.get();
+        long secondId = second.get();
+        try {
+            failing.get();
+            fail("The failing write succeeded.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertEquals("First", mDb.taskDao().getTask((int) firstId).getTask());
+        assertEquals("Second", mDb.taskDao().getTask((int) secondId).getTask());
+        assertEquals(2, mDb.taskDao().getTaskCount());
+    }
+
+    private static TaskWriteExecutor.Write<Long> insert(final String title) {
+        return new TaskWriteExecutor.Write<Long>() {
+            @Override
+            public Long run(@NonNull TaskDao dao) {
+                return dao.insert(new Task(title, null, null));
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.task.sync;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * In-memory RemoteTaskStore with the ordering of FirestoreTaskStore:
+ * each push takes the next time, shared by all the tasks of the push.
+ */
+class FakeRemoteTaskStore implements RemoteTaskStore {
+
+    private static final Comparator<RemoteTask> ORDER = new Comparator<RemoteTask>() {
+        @Override
+        public int compare(RemoteTask a, RemoteTask b) {
+            int bySyncedAt = Long.compare(a.getSyncedAt(), b.getSyncedAt());
+            return bySyncedAt != 0 ? bySyncedAt : a.getUuid().compareTo(b.getUuid());
+        }
+    };
+
+    private final Map<String, Map<String, RemoteTask>> mDocuments = new HashMap<>();
+    private long mClock;
+
+    // Counters
+    int pushCount;
+    int pushedTasks;
+    int pulledTasks;
+
+    @Override
+    public synchronized void push(@NonNull String userId, @NonNull List<RemoteTask> changes) {
+        Map<String, RemoteTask> documents = documents(userId);
+        mClock++;
+        for (RemoteTask change : changes) {
+            change.setSyncedAt(mClock);
+            documents.put(change.getUuid(), change);
+        }
+        pushCount++;
+        pushedTasks += changes.size();
+    }
+
+    @NonNull
+    @Override
+    public synchronized List<RemoteTask> pull(@NonNull String userId, @Nullable Cursor after,
+                                              int limit) {
+        TreeSet<RemoteTask> ordered = new TreeSet<>(ORDER);
+        ordered.addAll(documents(userId).values());
+        List<RemoteTask> changes = new ArrayList<>();
+        for (RemoteTask task : ordered) {
+            if (after != null && (task.getSyncedAt() < after.syncedAt
+                    || (task.getSyncedAt() == after.syncedAt
+                    && task.getUuid().compareTo(after.uuid) <= 0))) {
+                continue;
+            }
+            if (changes.size() == limit) {
+                break;
+            }
+            changes.add(task);
+        }
+        pulledTasks += changes.size();
+        return changes;
+    }
+
+    synchronized int size(String userId) {
+        return documents(userId).size();
+    }
+
+    private Map<String, RemoteTask> documents(String userId) {
+        Map<String, RemoteTask> documents = mDocuments.get(userId);
+        if (documents == null) {
+            documents = new HashMap<>();
+            mDocuments.put(userId, documents);
+        }
+        return documents;
+    }
+}
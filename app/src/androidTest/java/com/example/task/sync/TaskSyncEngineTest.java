@@ -0,0 +1,226 @@
+package com.example.task.sync;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.task.arch.HybridLogicalClock;
+import com.example.task.arch.Task;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskRoomDatabase;
+import com.example.task.arch.TaskWriteExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Two devices, each with its own database, syncing through a FakeRemoteTaskStore.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskSyncEngineTest {
+
+    private static final String USER = "user";
+
+    private Context mContext;
+    private FakeRemoteTaskStore mStore;
+    private Device mA;
+    private Device mB;
+    private final HybridLogicalClock mClock = new HybridLogicalClock();
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mStore = new FakeRemoteTaskStore();
+        mA = new Device("sync_test_a");
+        mB = new Device("sync_test_b");
+    }
+
+    @After
+    public void tearDown() {
+        mA.close();
+        mB.close();
+    }
+
+    @Test
+    public void push_copiesEveryTaskInBatches() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            tasks.add(new Task("Task " + i, "Details " + i, new Date(i * 60000L)));
+        }
+        mA.insert(tasks);
+
+        assertEquals(1200, mA.engine.push(USER));
+        assertEquals(3, mStore.pushCount);
+        assertEquals(0, mA.engine.push(USER));
+        assertFalse(mA.dao.hasLocalChanges());
+
+        assertEquals(1200, mB.engine.pull(USER));
+        assertEquals(1200, mB.dao.getFirstTasks(2000).size());
+        assertFalse(mB.dao.hasLocalChanges());
+    }
+
+    @Test
+    public void editsAndDeletions_reachTheOtherDevice() throws Exception {
+        mA.insert(Collections.singletonList(new Task("Edited", "", null)));
+        mA.insert(Collections.singletonList(new Task("Deleted", "", null)));
+        mA.engine.sync(USER);
+        mB.engine.sync(USER);
+
+        final Task edited = find(mB, "Edited");
+        final Task deleted = find(mB, "Deleted");
+        edited.setTask("Edited on B");
+        final long hlc = mClock.now();
+        mB.write(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                dao.updateContent(edited, hlc);
+                return dao.delete(deleted);
+            }
+        });
+        mB.engine.sync(USER);
+        mA.engine.sync(USER);
+
+        List<Task> tasks = mA.dao.getFirstTasks(10);
+        assertEquals(1, tasks.size());
+        assertEquals("Edited on B", tasks.get(0).getTask());
+        // Applying the remote deletion records no tombstone.
+        assertFalse(mA.dao.hasLocalChanges());
+    }
+
+    @Test
+    public void sync_onlyReadsWhatChanged() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tasks.add(new Task("Task " + i, null, null));
+        }
+        mA.insert(tasks);
+        mA.engine.sync(USER);
+        mB.engine.sync(USER);
+
+        mA.insert(Collections.singletonList(new Task("New", null, null)));
+        assertEquals(1, mA.engine.push(USER));
+        assertEquals(1, mB.engine.pull(USER));
+        assertEquals(0, mB.engine.pull(USER));
+        assertEquals(101, mB.dao.getFirstTasks(200).size());
+    }
+
+    @Test
+    public void olderRemoteChange_doesNotOverwriteLocalOne() throws Exception {
+        mA.insert(Collections.singletonList(new Task("Task", null, null)));
+        mA.engine.sync(USER);
+        mB.engine.sync(USER);
+
+        // B edits later than A, A pushes first.
+        editTask(mA, "On A", null);
+        editTask(mB, "On B", null);
+        mA.engine.sync(USER);
+        mB.engine.sync(USER);
+        mA.engine.sync(USER);
+
+        assertEquals("On B", mA.dao.getFirstTasks(1).get(0).getTask());
+        assertEquals("On B", mB.dao.getFirstTasks(1).get(0).getTask());
+    }
+
+    @Test
+    public void concurrentEditsOfDifferentFields_areBothKept() throws Exception {
+        mA.insert(Collections.singletonList(new Task("Task", "Details", null)));
+        mA.engine.sync(USER);
+        mB.engine.sync(USER);
+
+        editTask(mA, "Task on A", null);
+        editTask(mB, null, "Details on B");
+        mA.engine.sync(USER);
+        mB.engine.sync(USER);
+        mA.engine.sync(USER);
+
+        for (Device device : new Device[]{mA, mB}) {
+            Task task = device.dao.getFirstTasks(1).get(0);
+            assertEquals("Task on A", task.getTask());
+            assertEquals("Details on B", task.getDetails());
+            assertFalse(device.dao.hasLocalChanges());
+        }
+    }
+
+    /**
+     * Edits the first task of the device, a null text is left as it is.
+     */
+    private void editTask(Device device, String text, String details) throws Exception {
+        final Task task = device.dao.getFirstTasks(1).get(0);
+        if (text != null) {
+            task.setTask(text);
+        }
+        if (details != null) {
+            task.setDetails(details);
+        }
+        final long hlc = mClock.now();
+        device.write(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                return dao.updateContent(task, hlc);
+            }
+        });
+    }
+
+    private static Task find(Device device, String text) {
+        for (Task task : device.dao.getFirstTasks(100)) {
+            if (text.equals(task.getTask())) {
+                return task;
+            }
+        }
+        throw new AssertionError("No task " + text);
+    }
+
+    private class Device {
+
+        final String name;
+        final TaskRoomDatabase db;
+        final TaskDao dao;
+        final TaskWriteExecutor writer;
+        final TaskSyncEngine engine;
+
+        Device(String name) {
+            this.name = name;
+            mContext.deleteDatabase(name);
+            mContext.getSharedPreferences(name, Context.MODE_PRIVATE).edit().clear().commit();
+            db = TaskRoomDatabase.createBuilder(mContext, name,
+                    TaskRoomDatabase.StorageConfig.DEFAULT).build();
+            dao = db.taskDao();
+            writer = new TaskWriteExecutor(db);
+            engine = new TaskSyncEngine(dao, writer, mClock, mStore,
+                    mContext.getSharedPreferences(name, Context.MODE_PRIVATE));
+        }
+
+        void insert(final List<Task> tasks) throws Exception {
+            long hlc = mClock.now();
+            for (Task task : tasks) {
+                task.markChanged(hlc);
+            }
+            write(new TaskWriteExecutor.Write<List<Long>>() {
+                @Override
+                public List<Long> run(@NonNull TaskDao dao) {
+                    return dao.insert(tasks);
+                }
+            });
+        }
+
+        <T> T write(TaskWriteExecutor.Write<T> write) throws Exception {
+            return writer.submit(write).get();
+        }
+
+        void close() {
+            db.close();
+            mContext.deleteDatabase(name);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.task;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.SavedStateHandle;
+
+import com.example.task.arch.Task;
+import com.example.task.arch.TaskDraft;
+import com.example.task.arch.TaskRepository;
+import com.example.task.arch.TaskWriteExecutor;
+
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The state of NewTaskActivity. The activity only receives the id of the task
+ * to edit, the task is loaded and saved here through the TaskRepository.
+ *
+ * The form is autosaved as a TaskDraft while the user types. The edits are
+ * coalesced: the first edit schedules an autosave AUTOSAVE_INTERVAL_MILLIS
+ * later, which writes the form as it is then, so there are at most a couple
+ * of writes per second whatever the typing speed. A draft left behind is
+ * shown again the next time the task is edited.
+ *
+ * The draft is also kept in the SavedStateHandle, so an edit survives the
+ * process being killed while the editor is in the background.
+ */
+public class EditTaskViewModel extends AndroidViewModel {
+
+    static final long AUTOSAVE_INTERVAL_MILLIS = 500;
+
+    // Keys of the saved state
+    private static final String KEY_TASK = "draft_task";
+    private static final String KEY_DETAILS = "draft_details";
+    private static final String KEY_DATE = "draft_date";
+
+    private final TaskRepository mRepository;
+    private final SavedStateHandle mState;
+    private final MutableLiveData<Task> mDraft = new MutableLiveData<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // The task as loaded, null for a new task or until it is loaded.
+    private Task mOriginal;
+    // The loading of the task, done by the time its callback runs.
+    private Future<Task> mTaskLoad;
+    private boolean mDraftRestored;
+
+    // The form not autosaved yet, null if there is none.
+    private TaskDraft mPendingDraft;
+    private boolean mSaved;
+
+    private final Runnable mAutosave = new Runnable() {
+        @Override
+        public void run() {
+            writeDraft();
+        }
+    };
+
+    public EditTaskViewModel(@NonNull Application application, @NonNull SavedStateHandle state) {
+        super(application);
+        mRepository = TaskRepository.getRepository(application);
+        mState = state;
+
+        final boolean restored = state.contains(KEY_TASK);
+        if (restored) {
+            mDraft.setValue(restoreDraft());
+        }
+        if (isEditing()) {
+            mTaskLoad = mRepository.getTask(getTaskId(), new TaskWriteExecutor.Callback<Task>() {
+                @Override
+                public void onComplete(@Nullable Task task) {
+                    mOriginal = task;
+                    if (task == null && hasFailed(mTaskLoad)) {
+                        // Not read, the draft is kept for the next time.
+                        cancelAutosave();
+                        mDraft.setValue(null);
+                    } else if (task == null) {
+                        // Deleted meanwhile, its draft cannot be saved.
+                        cancelAutosave();
+                        mRepository.deleteDraft(getTaskId());
+                        mDraft.setValue(null);
+                    } else if (!restored) {
+                        loadDraft(task);
+                    }
+                }
+            });
+        } else if (!restored) {
+            loadDraft(new Task("", "", null));
+        }
+    }
+
+    private static boolean hasFailed(Future<?> future) {
+        try {
+            future.get();
+            return false;
+        } catch (ExecutionException | InterruptedException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Shows the draft left behind for the task, if any, or the task.
+     */
+    private void loadDraft(final Task task) {
+        mRepository.getDraft(getDraftId(), new TaskWriteExecutor.Callback<TaskDraft>() {
+            @Override
+            public void onComplete(@Nullable TaskDraft draft) {
+                mDraftRestored = draft != null;
+                mDraft.setValue(draft != null ? draft.toTask() : task);
+            }
+        });
+    }
+
+    /**
+     * Whether an existing task is edited, rather than a new one created.
+     */
+    boolean isEditing() {
+        return getTaskId() != -1;
+    }
+
+    private int getTaskId() {
+        Integer id = mState.get(MainActivity.EXTRA_DATA_ID);
+        return id != null ? id : -1;
+    }
+
+    private int getDraftId() {
+        return isEditing() ? getTaskId() : TaskDraft.NEW_TASK_ID;
+    }
+
+    /**
+     * The task to show in the form, once loaded. Null if the edited task
+     * was deleted meanwhile.
+     */
+    LiveData<Task> getDraft() {
+        return mDraft;
+    }
+
+    /**
+     * Whether the form shows a draft autosaved by an earlier edit.
+     */
+    boolean isDraftRestored() {
+        return mDraftRestored;
+    }
+
+    /**
+     * Keeps the content of the form, to restore it after a process death.
+     *
+     * @param date The date in milliseconds, 0 for none.
+     */
+    void setDraft(String task, String details, long date) {
+        mState.set(KEY_TASK, task);
+        mState.set(KEY_DETAILS, details);
+        mState.set(KEY_DATE, date);
+        mDraft.setValue(toTask(task, details, date));
+    }
+
+    /**
+     * Called on every change of the form, schedules an autosave unless one is.
+     *
+     * @param date The date in milliseconds, 0 for none.
+     */
+    void onEdited(String task, String details, long date) {
+        if (mSaved) {
+            return;
+        }
+        boolean scheduled = mPendingDraft != null;
+        mPendingDraft = new TaskDraft(getDraftId(), task, details, date,
+                System.currentTimeMillis());
+        if (!scheduled) {
+            mHandler.postDelayed(mAutosave, AUTOSAVE_INTERVAL_MILLIS);
+        }
+    }
+
+    /**
+     * Writes the pending autosave now, when the editor leaves the screen.
+     */
+    void flushDraft() {
+        mHandler.removeCallbacks(mAutosave);
+        writeDraft();
+    }
+
+    private void writeDraft() {
+        TaskDraft draft = mPendingDraft;
+        mPendingDraft = null;
+        if (draft == null) {
+            return;
+        }
+        // A cleared form, or back to the task as loaded, leaves nothing to recover.
+        if (draft.isEmpty() || (mOriginal != null && mOriginal.hasSameContent(draft.toTask()))) {
+            mRepository.deleteDraft(draft.getTaskId());
+        } else {
+            mRepository.saveDraft(draft);
+        }
+    }
+
+    /**
+     * Inserts the new task or updates the edited one, and deletes its draft.
+     * An edit that changed nothing is not written, so it is not synced either.
+     *
+     * @param date The date in milliseconds, 0 for none.
+     */
+    void save(String task, String details, long date) {
+        cancelAutosave();
+        Task edited = toTask(task, details, date);
+        if (!isEditing()) {
+            mRepository.insert(edited);
+        } else {
+            edited.setId(getTaskId());
+            if (mOriginal == null || !mOriginal.hasSameContent(edited)) {
+                mRepository.update(edited);
+            }
+        }
+        // Queued after the save, so a crash in between keeps the draft.
+        mRepository.deleteDraft(getDraftId());
+    }
+
+    /**
+     * Drops the draft, the user cleared the form.
+     */
+    void discard() {
+        cancelAutosave();
+        mRepository.deleteDraft(getDraftId());
+    }
+
+    private void cancelAutosave() {
+        mSaved = true;
+        mHandler.removeCallbacks(mAutosave);
+        mPendingDraft = null;
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        flushDraft();
+    }
+
+    private Task restoreDraft() {
+        Long date = mState.get(KEY_DATE);
+        return toTask(mState.<String>get(KEY_TASK), mState.<String>get(KEY_DETAILS),
+                date != null ? date : 0);
+    }
+
+    private static Task toTask(String task, String details, long date) {
+        return new Task(task, details, date != 0 ? new Date(date) : null);
+    }
+}
@@ -4,41 +4,60 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
+import androidx.core.os.TraceCompat;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.ItemTouchHelper;
-import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
-import androidx.recyclerview.widget.StaggeredGridLayoutManager;
-
-import com.example.task.arch.Task;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.example.task.arch.TaskBackupWorker;
+import com.example.task.arch.TaskDraft;
+import com.example.task.arch.TaskListItem;
+import com.example.task.arch.TaskRepository;
+import com.example.task.arch.TaskSearchResult;
+import com.example.task.arch.TaskWriteExecutor;
+import com.example.task.reminder.TaskReminders;
+import com.example.task.sync.OutboxWorker;
+import com.example.task.sync.TaskSyncWorker;
+import com.example.task.widget.TaskWidgetUpdater;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 
 /**
  * This class displays a list of task in a RecyclerView. The task are saved in a Room database.
  * The layout for this activity also displays a FAB that allows users to start the
- * NewTaskActivity to add new tasks. Users can delete a task by swiping it away, or delete all
- * tasks through the Options menu. Whenever a new task is added, deleted, or updated,
+ * NewTaskActivity to add new tasks. Users can complete a task by swiping it away, and undo it
+ * from the Snackbar, or delete all tasks through the Options menu. Whenever a new task is added, deleted, or updated,
  * the RecyclerView showing the list of tasks automatically updates.
+ * A long click on a task starts an action mode to complete many tasks at once.
  *
  */
 public class MainActivity extends AppCompatActivity {
@@ -46,16 +65,25 @@ public class MainActivity extends AppCompatActivity {
     // Intent request codes
     public static final int NEW_TASK_REQUEST_CODE = 1;
     public static final int UPDATE_TASK_REQUEST_CODE = 2;
+    public static final int EXPORT_REQUEST_CODE = 3;
+    public static final int IMPORT_REQUEST_CODE = 4;
+
+    // Type of the backup documents, JSON Lines.
+    private static final String BACKUP_MIME_TYPE = "application/x-ndjson";
+    private static final String BACKUP_FILE_NAME = "tasks.jsonl";
+
+    // Runs the work started once the list is shown.
+    private static final Executor STARTUP_EXECUTOR = Executors.newSingleThreadExecutor();
 
     // Intent extended data string constants
     public static final String EXTRA_DATA_ID = "extra_data_id";
-    public static final String EXTRA_DATA_UPDATE_TASK = "extra_task_to_be_updated";
-    public static final String EXTRA_DATA_UPDATE_DETAILS = "extra_details_to_be_updated";
-    public static final String EXTRA_DATA_UPDATE_DATE = "extra_date_to_be_updated";
 
     // Shared preferences string constants
     private static final String PREF_FILE = "shared_pref_file";
     private static final String VISIBILITY_KEY = "visibility";
+
+    // Saved instance state keys
+    private static final String SELECTED_IDS_KEY = "selected_ids";
     private boolean isItemVisible;
 
     // Member variables
@@ -65,23 +93,41 @@ public class MainActivity extends AppCompatActivity {
     private TaskListAdapter mAdapter;
     private CoordinatorLayout mCoordinatorLayout;
     private RecyclerView mRecyclerView;
+    private RecyclerView mSearchRecyclerView;
+    private TaskViewModeController mViewModeController;
     private Snackbar mPressAgainSnackBar;
+    private ActionMode mActionMode;
 
-    // Declared variable
+    // Declared variables
     private long beforeExitTime;
+    private boolean isFirstPageShown;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         setTheme(R.style.AppTheme_NoActionBar); // Set the base theme of this context.
         super.onCreate(savedInstanceState);
+
+        // Check firebase if there is a user currently logged in, before anything
+        // of the task list is built. Only the auth instance is needed here.
+        mAuth = FirebaseAuth.getInstance();
+        FirebaseUser currentUser = mAuth.getCurrentUser();
+        if (currentUser == null || !currentUser.isEmailVerified()) {
+            Intent intent = new Intent(MainActivity.this, LoginActivity.class);
+            startActivity(intent);
+            finish();
+            return;
+        }
+
+        TraceCompat.beginSection("MainActivity.onCreate");
+        // Open the database and read the first page in the background,
+        // while the layout is inflated.
+        TaskRepository.getRepository(getApplication()).prewarm(TaskViewModel.PAGE_SIZE);
+
         setContentView(R.layout.activity_main);
 
         // Get the instance of the view objects and capture them from the layout.
         mCoordinatorLayout = findViewById(R.id.coordinatorLayout);
 
-        // Initialize the Firebase instance.
-        mAuth = FirebaseAuth.getInstance();
-
         // Create the shared pref file.
         mSharedPrefs = getSharedPreferences(PREF_FILE, Context.MODE_PRIVATE);
 
@@ -90,24 +136,72 @@ public class MainActivity extends AppCompatActivity {
         setSupportActionBar(toolbar);
 
         // Set up the recycler view.
-        mAdapter = new TaskListAdapter();
+        mAdapter = new TaskListAdapter(TaskDateFormatter.getInstance(this));
         mRecyclerView = findViewById(R.id.recyclerView);
         mRecyclerView.setHasFixedSize(true);
         mRecyclerView.setAdapter(mAdapter);
 
+        // Set the item layout saved in the shared prefs file.
+        isItemVisible = mSharedPrefs.getBoolean(VISIBILITY_KEY, isItemVisible);
+        mViewModeController = new TaskViewModeController(this, mRecyclerView);
+        mViewModeController.setLinear(isItemVisible);
+
         // Set up the view model.
         // Get all the tasks from the database and associate them to the adapter.
         mViewModel = new ViewModelProvider(this).get(TaskViewModel.class);
-        mViewModel.getAllTasks().observe(this, new Observer<List<Task>>() {
+        if (savedInstanceState == null) {
+            // Show the tasks saved by the last run while the database opens,
+            // the list from the database is diffed against them.
+            PagedList<TaskListItem> snapshot = mViewModel.getSnapshot();
+            if (snapshot != null) {
+                mAdapter.submitList(snapshot);
+            }
+            // Offer to resume an edit left unsaved by the last run.
+            offerDraft(false);
+        }
+        mViewModel.getAllTasks().observe(this, new Observer<PagedList<TaskListItem>>() {
             @Override
-            public void onChanged(@Nullable List<Task> tasks) {
-                mAdapter.submitList(tasks); // Submits a new list to be diffed, and displayed.
+            public void onChanged(@Nullable PagedList<TaskListItem> tasks) {
+                mAdapter.submitList(tasks); // Submits a new page list to be diffed, and displayed.
+                if (!isFirstPageShown) {
+                    // The list is usable from the first page on.
+                    isFirstPageShown = true;
+                    reportFullyDrawn();
+                    startBackgroundWork();
+                }
+            }
+        });
+
+        // Set up the results of the search, shown while the search view is expanded.
+        final TaskSearchAdapter searchAdapter = new TaskSearchAdapter();
+        mSearchRecyclerView = findViewById(R.id.searchRecyclerView);
+        mSearchRecyclerView.setAdapter(searchAdapter);
+        searchAdapter.setOnResultClickListener(new TaskSearchAdapter.OnResultClickListener() {
+            @Override
+            public void onResultClick(TaskSearchResult result) {
+                launchEditActivity(result.task.getId());
+            }
+        });
+        mViewModel.getSearchResults().observe(this, new Observer<List<TaskSearchResult>>() {
+            @Override
+            public void onChanged(@Nullable List<TaskSearchResult> results) {
+                searchAdapter.submitList(results);
             }
         });
 
         // Add the functionality to swipe items in the RecyclerView to delete the swiped item.
         ItemTouchHelper helper = new ItemTouchHelper(new ItemTouchHelper.SimpleCallback(0,
                 ItemTouchHelper.LEFT | ItemTouchHelper.RIGHT) {
+            // No swipe while tasks are being selected.
+            @Override
+            public int getSwipeDirs(@NonNull RecyclerView recyclerView,
+                                    @NonNull RecyclerView.ViewHolder viewHolder) {
+                if (mAdapter.isSelectionMode()) {
+                    return 0;
+                }
+                return super.getSwipeDirs(recyclerView, viewHolder);
+            }
+
             // Will not implement the onMove() in this app.
             @Override
             public boolean onMove(@NonNull RecyclerView recyclerView,
@@ -116,16 +210,15 @@ public class MainActivity extends AppCompatActivity {
                 return false;
             }
 
-            // When the user swipes a task, delete that task from the database.
+            // When the user swipes a task, mark that task completed.
             @Override
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
                 int position = viewHolder.getAdapterPosition();
-                Task myTask = mAdapter.getTaskAtPosition(position);
-                mViewModel.delete(myTask); // Delete the task.
-                // Tell user the task is completed.
-                Snackbar snackbar = Snackbar.make(mCoordinatorLayout, R.string.task_completed,
-                        Snackbar.LENGTH_LONG);
-                snackbar.show();
+                TaskListItem myTask = mAdapter.getTaskAtPosition(position);
+                if (myTask == null) {
+                    return; // The page of this task is not loaded yet.
+                }
+                completeTasks(Collections.singletonList(myTask.id));
             }
         });
         helper.attachToRecyclerView(mRecyclerView); // Attach the touch helper to recycler view.
@@ -133,21 +226,50 @@ public class MainActivity extends AppCompatActivity {
         // The user can edit and update the task, when the item in the recycler view is clicked.
         mAdapter.setOnItemClickListener(new TaskListAdapter.OnItemClickListener() {
             @Override
-            public void onItemClick(Task task) {
-               launchEditActivity(task);
+            public void onItemClick(TaskListItem item) {
+               launchEditActivity(item.id);
             }
             // The user can also remove/complete the task when the radio button is click.
             @Override
             public void onDeleteClick(int position) {
-                Task myTask = mAdapter.getTaskAtPosition(position);
-                mViewModel.delete(myTask);
-                // Tell user the task is completed.
-                Snackbar snackbar = Snackbar.make(mCoordinatorLayout, R.string.task_completed,
-                        Snackbar.LENGTH_LONG);
-                snackbar.show();
+                TaskListItem myTask = mAdapter.getTaskAtPosition(position);
+                if (myTask == null) {
+                    return;
+                }
+                completeTasks(Collections.singletonList(myTask.id));
+            }
+
+            // A long click starts the selection with the clicked task.
+            @Override
+            public void onItemLongClick(TaskListItem item) {
+                startSelection(Collections.singletonList(item.id));
+            }
+
+            @Override
+            public void onSelectionChanged(int selectedCount) {
+                if (mActionMode == null) {
+                    return;
+                }
+                if (selectedCount == 0) {
+                    mActionMode.finish();
+                } else {
+                    mActionMode.setTitle(getString(R.string.selected_count, selectedCount));
+                }
             }
         });
 
+        // Restore the selection after a configuration change.
+        if (savedInstanceState != null) {
+            int[] selectedIds = savedInstanceState.getIntArray(SELECTED_IDS_KEY);
+            if (selectedIds != null && selectedIds.length > 0) {
+                List<Integer> ids = new ArrayList<>(selectedIds.length);
+                for (int id : selectedIds) {
+                    ids.add(id);
+                }
+                startSelection(ids);
+            }
+        }
+
         // Floating action button setup.
         FloatingActionButton mFab = findViewById(R.id.fab);
         mFab.setOnClickListener(new View.OnClickListener() {
@@ -156,82 +278,126 @@ public class MainActivity extends AppCompatActivity {
                 createNewTask();
             }
         });
+        TraceCompat.endSection();
     }
 
     /**
-     * Check firebase if there is a user currently logged in.
+     * Keep the selected tasks across a configuration change.
      */
     @Override
-    protected void onStart() {
-        super.onStart();
-        FirebaseUser currentUser = mAuth.getCurrentUser();
-        if (currentUser == null || !currentUser.isEmailVerified()) {
-            Intent intent = new Intent(MainActivity.this, LoginActivity.class);
-            startActivity(intent);
-            finish();
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (mAdapter != null && mAdapter.isSelectionMode()) {
+            List<Integer> ids = mAdapter.getSelectedIds();
+            int[] selectedIds = new int[ids.size()];
+            for (int i = 0; i < selectedIds.length; i++) {
+                selectedIds[i] = ids.get(i);
+            }
+            outState.putIntArray(SELECTED_IDS_KEY, selectedIds);
         }
     }
 
-
     /**
      * Dispatch incoming result to the NewTaskActivity.
      */
     @Override
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == NEW_TASK_REQUEST_CODE && resultCode == RESULT_OK) {
-            if (data != null) {
-                // Retrieve the extended data from the NewTaskActivity intent.
-                String taskData = data.getStringExtra(NewTaskActivity.EXTRA_REPLY_TASK);
-                String detailsData = data.getStringExtra(NewTaskActivity.EXTRA_REPLY_DETAILS);
-                long date = data.getLongExtra(NewTaskActivity.EXTRA_REPLY_DATE, 0);
-                Date dateData = new Date(date); // Convert the date long type to date type.
-
-                // Insert new task to database.
-                if (date != 0) {
-                    Task task = new Task(taskData, detailsData, dateData);
-                    mViewModel.insert(task);
-                } else {
-                    Task task = new Task(taskData, detailsData, null);
-                    mViewModel.insert(task);
-                }
+        if ((requestCode == NEW_TASK_REQUEST_CODE || requestCode == UPDATE_TASK_REQUEST_CODE)
+                && resultCode == RESULT_OK) {
+            // Saved by NewTaskActivity itself, the list follows the database.
+            return;
+        }
+        if (requestCode == EXPORT_REQUEST_CODE || requestCode == IMPORT_REQUEST_CODE) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                startBackup(data.getData(), requestCode == EXPORT_REQUEST_CODE);
             }
-        } else if (requestCode == UPDATE_TASK_REQUEST_CODE && resultCode == RESULT_OK) {
-            if (data != null) {
-                int id = data.getIntExtra(NewTaskActivity.EXTRA_REPLY_ID, -1);
-                if (id == -1) {
-                    Toast.makeText(this, R.string.cannot_be_updated, Toast.LENGTH_SHORT).show();
+        } else {
+            offerDraft(true);
+        }
+    }
+
+    /**
+     * Shows a Snackbar to resume the draft autosaved last, if there is one.
+     *
+     * @param notSaved Whether the editor was just left without saving, then
+     *                 the Snackbar says so even without a draft.
+     */
+    private void offerDraft(final boolean notSaved) {
+        mViewModel.getLatestDraft(new TaskWriteExecutor.Callback<TaskDraft>() {
+            @Override
+            public void onComplete(@Nullable final TaskDraft draft) {
+                if (isFinishing()) {
                     return;
                 }
-                // Retrieve the extended data from the NewTaskActivity intent.
-                String taskData = data.getStringExtra(NewTaskActivity.EXTRA_REPLY_TASK);
-                String detailsData = data.getStringExtra(NewTaskActivity.EXTRA_REPLY_DETAILS);
-                long date = data.getLongExtra(NewTaskActivity.EXTRA_REPLY_DATE, 0);
-                Date dateData = new Date(date);
-
-                // Update the edited task.
-                if (date != 0) {
-                    Task task = new Task(taskData, detailsData, dateData);
-                    task.setId(id);
-                    mViewModel.update(task);
-                } else {
-                    Task task = new Task(taskData, detailsData, null);
-                    task.setId(id);
-                    mViewModel.update(task);
+                if (draft == null) {
+                    if (notSaved) {
+                        Snackbar.make(mCoordinatorLayout, R.string.task_not_saved,
+                                Snackbar.LENGTH_SHORT).show();
+                    }
+                    return;
                 }
+                Snackbar.make(mCoordinatorLayout, R.string.draft_kept, Snackbar.LENGTH_LONG)
+                        .setAction(R.string.resume, new View.OnClickListener() {
+                            @Override
+                            public void onClick(View v) {
+                                if (draft.getTaskId() == TaskDraft.NEW_TASK_ID) {
+                                    createNewTask();
+                                } else {
+                                    launchEditActivity(draft.getTaskId());
+                                }
+                            }
+                        })
+                        .show();
             }
-        } else {
-            Snackbar.make(mCoordinatorLayout, "Task not saved.", Snackbar.LENGTH_SHORT).show();
-        }
+        });
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate a menu in this activity's toolbar
         getMenuInflater().inflate(R.menu.main_menu, menu);
+        setUpSearch(menu.findItem(R.id.search_tasks));
         return true;
     }
 
+    /**
+     * The search view replaces the list by the results of the search while it is
+     * expanded. The query is searched as it is typed, see TaskViewModel.setSearchQuery.
+     */
+    private void setUpSearch(MenuItem searchItem) {
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mViewModel.setSearchQuery(newText);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                mRecyclerView.setVisibility(View.GONE);
+                mSearchRecyclerView.setVisibility(View.VISIBLE);
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                mViewModel.setSearchQuery("");
+                mSearchRecyclerView.setVisibility(View.GONE);
+                mRecyclerView.setVisibility(View.VISIBLE);
+                return true;
+            }
+        });
+    }
+
     /**
      * Prepare the Screen's standard options menu to be displayed.
      * This is called right before the menu is shown, every time it is shown.
@@ -250,13 +416,8 @@ public class MainActivity extends AppCompatActivity {
             menu.findItem(R.id.staggered_view).setVisible(true);
         }
 
-        // Set the item layout
-        if (menu.findItem(R.id.linear_view).isVisible()) {
-            mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        } else {
-            mRecyclerView.setLayoutManager(new StaggeredGridLayoutManager(2,
-                    StaggeredGridLayoutManager.VERTICAL));
-        }
+        // Set the item layout, the layout manager only changes with the mode.
+        mViewModeController.setLinear(isItemVisible);
         return super.onPrepareOptionsMenu(menu);
     }
 
@@ -271,8 +432,22 @@ public class MainActivity extends AppCompatActivity {
             case R.id.delete_all_tasks:
                 confirmDeleteAllTasks(); // Delete all tasks.
                 return true;
+            case R.id.export_tasks:
+                Intent export = new Intent(Intent.ACTION_CREATE_DOCUMENT)
+                        .addCategory(Intent.CATEGORY_OPENABLE)
+                        .setType(BACKUP_MIME_TYPE)
+                        .putExtra(Intent.EXTRA_TITLE, BACKUP_FILE_NAME);
+                startActivityForResult(export, EXPORT_REQUEST_CODE);
+                return true;
+            case R.id.import_tasks:
+                // Pickers rarely know the JSON Lines type, any document is offered.
+                Intent open = new Intent(Intent.ACTION_OPEN_DOCUMENT)
+                        .addCategory(Intent.CATEGORY_OPENABLE)
+                        .setType("*/*");
+                startActivityForResult(open, IMPORT_REQUEST_CODE);
+                return true;
             case R.id.log_out:
-                logoutUser(); // Log out user.
+                confirmLogout();
                 return true;
             case R.id.linear_view:
                 item.setIcon(R.drawable.ic_round_dashboard_24);
@@ -288,6 +463,27 @@ public class MainActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Starts the work that the list does not wait for, once its first page is
+     * shown, on a background thread: none of it delays the first frame.
+     */
+    private void startBackgroundWork() {
+        final Context context = getApplicationContext();
+        STARTUP_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Mirror the tasks of the user to Firestore in the background.
+                TaskSyncWorker.start(context);
+                // Send the remote writes left in the outbox by a previous run, if any.
+                OutboxWorker.requestDrain(context);
+                // Arm the alarm of the next task due.
+                TaskReminders.getReminders(context).start();
+                // Keep the widgets in step with the tasks changed in this process.
+                TaskWidgetUpdater.getUpdater(context);
+            }
+        });
+    }
+
     /**
      * Do not close the app immediately.
      */
@@ -313,6 +509,136 @@ public class MainActivity extends AppCompatActivity {
         this.invalidateOptionsMenu();
     }
 
+    /**
+     * Export every task to the document, or import its tasks, in the background.
+     * The progress is shown in a Snackbar, which can cancel the backup.
+     */
+    private void startBackup(Uri uri, final boolean export) {
+        final UUID id = TaskBackupWorker.start(this, uri, export);
+        final Snackbar progress = Snackbar.make(mCoordinatorLayout,
+                getString(export ? R.string.exporting : R.string.importing, 0),
+                Snackbar.LENGTH_INDEFINITE)
+                .setAction(R.string.cancel, new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        WorkManager.getInstance(MainActivity.this).cancelWorkById(id);
+                    }
+                });
+        progress.show();
+
+        final LiveData<WorkInfo> work = WorkManager.getInstance(this).getWorkInfoByIdLiveData(id);
+        work.observe(this, new Observer<WorkInfo>() {
+            @Override
+            public void onChanged(WorkInfo info) {
+                if (info == null) {
+                    return;
+                }
+                if (!info.getState().isFinished()) {
+                    long done = info.getProgress().getLong(TaskBackupWorker.PROGRESS_DONE, 0);
+                    long total = info.getProgress().getLong(TaskBackupWorker.PROGRESS_TOTAL, 0);
+                    if (total > 0) {
+                        progress.setText(getString(export ? R.string.exporting
+                                : R.string.importing, (int) (done * 100 / total)));
+                    }
+                    return;
+                }
+                work.removeObserver(this);
+                progress.dismiss();
+                if (info.getState() == WorkInfo.State.CANCELLED) {
+                    return;
+                }
+                String message;
+                if (info.getState() == WorkInfo.State.SUCCEEDED) {
+                    int count = (int) info.getOutputData().getLong(
+                            TaskBackupWorker.OUTPUT_COUNT, 0);
+                    message = getResources().getQuantityString(export ? R.plurals.tasks_exported
+                            : R.plurals.tasks_imported, count, count);
+                } else {
+                    message = getString(R.string.backup_failed);
+                }
+                Snackbar.make(mCoordinatorLayout, message, Snackbar.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Start the action mode to select tasks, with the given tasks selected.
+     */
+    private void startSelection(List<Integer> ids) {
+        mAdapter.startSelection(ids);
+        mActionMode = startSupportActionMode(mSelectionCallback);
+        if (mActionMode != null) {
+            mActionMode.setTitle(getString(R.string.selected_count, ids.size()));
+        }
+    }
+
+    /**
+     * Complete the selected tasks.
+     */
+    private void completeSelectedTasks() {
+        List<Integer> ids = mAdapter.getSelectedIds();
+        if (!ids.isEmpty()) {
+            completeTasks(ids);
+        }
+    }
+
+    /**
+     * Mark the tasks completed with a single update statement, so the list
+     * is loaded and diffed again once for all of them. The Snackbar can undo it.
+     */
+    private void completeTasks(final List<Integer> ids) {
+        mViewModel.setCompleted(ids, true, new TaskWriteExecutor.Callback<Integer>() {
+            @Override
+            public void onComplete(@Nullable Integer count) {
+                if (count == null) {
+                    return; // Not written, nothing to undo.
+                }
+                int completed = count;
+                String message = completed == 1 ? getString(R.string.task_completed)
+                        : getResources().getQuantityString(R.plurals.tasks_completed,
+                        completed, completed);
+                Snackbar.make(mCoordinatorLayout, message, Snackbar.LENGTH_LONG)
+                        .setAction(R.string.undo, new View.OnClickListener() {
+                            @Override
+                            public void onClick(View v) {
+                                mViewModel.setCompleted(ids, false, null);
+                            }
+                        })
+                        .show();
+            }
+        });
+    }
+
+    // The action mode shown while tasks are selected.
+    private final ActionMode.Callback mSelectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.selection_menu, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (item.getItemId() == R.id.complete_selected) {
+                completeSelectedTasks();
+                mode.finish();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            mActionMode = null;
+            mAdapter.finishSelection();
+        }
+    };
+
     /**
      * Ask user to confirm delete all tasks.
      */
@@ -358,24 +684,52 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Bring user to an activity to edit the selected task.
+     * Only the id is passed, the editor loads the whole task.
      */
-    private void launchEditActivity(Task task) {
+    private void launchEditActivity(int id) {
         Intent intent = new Intent(MainActivity.this, NewTaskActivity.class);
-        intent.putExtra(EXTRA_DATA_ID, task.getId());
-        intent.putExtra(EXTRA_DATA_UPDATE_TASK, task.getTask());
-        intent.putExtra(EXTRA_DATA_UPDATE_DETAILS, task.getDetails());
-        if (task.getDate() != null) {
-            long date = task.getDate().getTime();
-            intent.putExtra(EXTRA_DATA_UPDATE_DATE, date);
-        } // No date from the selected task.
+        intent.putExtra(EXTRA_DATA_ID, id);
         startActivityForResult(intent, UPDATE_TASK_REQUEST_CODE);
     }
 
     /**
-     * Log out user account.
+     * Log out user account, after a confirmation if some changes were not synced yet.
+     */
+    private void confirmLogout() {
+        mViewModel.hasLocalChanges(new TaskWriteExecutor.Callback<Boolean>() {
+            @Override
+            public void onComplete(@Nullable Boolean changes) {
+                // Unknown after a failed read, so confirm as if there were changes.
+                if (changes != null && !changes) {
+                    logoutUser();
+                    return;
+                }
+                new AlertDialog.Builder(MainActivity.this)
+                        .setTitle(R.string.log_out)
+                        .setMessage(R.string.log_out_unsynced_message)
+                        .setNegativeButton(R.string.no, null)
+                        .setPositiveButton(R.string.yes, new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                logoutUser();
+                            }
+                        })
+                        .show();
+            }
+        });
+    }
+
+    /**
+     * Log out user account. The data of the user is deleted from the device,
+     * none of it is left for the next user to sign in.
      */
     private void logoutUser() {
         mAuth.signOut();
+        TaskSyncWorker.stop(this);
+        OutboxWorker.cancel(this);
+        // The reminders and the widgets follow the tasks deleted.
+        mViewModel.clearLocalData();
+        TaskReminders.getReminders(this).reset();
         Intent intent = new Intent(MainActivity.this, LoginActivity.class);
         startActivity(intent);
         finish();
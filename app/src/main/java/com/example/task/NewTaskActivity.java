@@ -1,12 +1,12 @@
 package com.example.task;
 
-import android.annotation.SuppressLint;
 import android.app.DatePickerDialog;
 import android.app.TimePickerDialog;
 import android.content.Context;
-import android.content.Intent;
 import android.os.Bundle;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -16,42 +16,44 @@ import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.TextView;
 import android.widget.TimePicker;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.constraintlayout.widget.ConstraintLayout;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.SavedStateViewModelFactory;
+import androidx.lifecycle.ViewModelProvider;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import com.example.task.arch.Task;
 
-import static com.example.task.MainActivity.EXTRA_DATA_ID;
-import static com.example.task.MainActivity.EXTRA_DATA_UPDATE_DATE;
-import static com.example.task.MainActivity.EXTRA_DATA_UPDATE_DETAILS;
-import static com.example.task.MainActivity.EXTRA_DATA_UPDATE_TASK;
+import java.util.Calendar;
 
 /**
  * This class is the form for adding a task in the database.
  * It has a field for the new task, added details and a text view
  * for the date and time. This is also used to update or edit task.
+ *
+ * The intent only holds the id of the task to edit, in EXTRA_DATA_ID.
+ * The task is loaded and saved by the EditTaskViewModel, which also
+ * autosaves the form as a draft while the user types.
  */
 public class NewTaskActivity extends AppCompatActivity {
 
-    // Reply intent extended data string constants
-    public static final String EXTRA_REPLY_ID = "com.example.task.EXTRA_ID";
-    public static final String EXTRA_REPLY_TASK = "com.example.task.EXTRA_TASK";
-    public static final String EXTRA_REPLY_DETAILS = "com.example.task.EXTRA_DETAILS";
-    public static final String EXTRA_REPLY_DATE = "com.example.task.EXTRA_DATE";
-
     // Member variables
+    private EditTaskViewModel mViewModel;
     private EditText mEditTaskView;
     private EditText mEditDetailsView;
     private TextView mDateView;
     private ConstraintLayout mLayoutDateView;
     private InputMethodManager imm;
+    private TaskDateFormatter mDateFormatter;
 
     // Declared variables
     private long date;
+    private boolean mDraftShown;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,6 +66,7 @@ public class NewTaskActivity extends AppCompatActivity {
         mDateView = findViewById(R.id.textView_date);
         ImageButton mRemoveDateButton = findViewById(R.id.imageButton_remove_date);
         mLayoutDateView = findViewById(R.id.constraintLayout_date);
+        mDateFormatter = TaskDateFormatter.getInstance(this);
 
         // Set the up action bar.
         ActionBar actionBar = getSupportActionBar();
@@ -72,54 +75,52 @@ public class NewTaskActivity extends AppCompatActivity {
             actionBar.setTitle("");
         }
 
-        // getIntent() object
-        Intent intent = getIntent();
-        if (intent.hasExtra(EXTRA_DATA_ID)) {
-            if (actionBar != null) {
-                actionBar.setTitle("Edit"); // Set the title of this activity to Edit.
-            }
-
-            // Get all incoming intents.
-            String task = intent.getStringExtra(EXTRA_DATA_UPDATE_TASK);
-            String details = intent.getStringExtra(EXTRA_DATA_UPDATE_DETAILS);
-
-            // Set the text of the input fields.
-            mEditTaskView.setText(task);
-            mEditDetailsView.setText(details);
-
-            if (task != null) {
-                if (!task.isEmpty()) {
-                    mEditTaskView.setSelection(task.length());
-                    mEditTaskView.requestFocus();
-                    if (details != null && details.isEmpty()) {
-                        mEditDetailsView.setVisibility(View.GONE);
+        // The intent extras are the defaults of the saved state, for the id of the task.
+        mViewModel = new ViewModelProvider(this, new SavedStateViewModelFactory(
+                getApplication(), this, getIntent().getExtras())).get(EditTaskViewModel.class);
+        if (actionBar != null) {
+            // Set the title of this activity to Edit or Add.
+            actionBar.setTitle(mViewModel.isEditing() ? "Edit" : "Add");
+        }
+        // Empty until the task or the draft is there.
+        mEditDetailsView.setVisibility(View.GONE);
+        mLayoutDateView.setVisibility(View.GONE);
+        mViewModel.getDraft().observe(this, new Observer<Task>() {
+            @Override
+            public void onChanged(@Nullable Task task) {
+                if (task == null) {
+                    // Deleted meanwhile, by the sync or another screen.
+                    Toast.makeText(NewTaskActivity.this, R.string.cannot_be_updated,
+                            Toast.LENGTH_SHORT).show();
+                    finish();
+                } else if (!mDraftShown) {
+                    showDraft(task);
+                    mDraftShown = true;
+                    if (mViewModel.isDraftRestored()) {
+                        Toast.makeText(NewTaskActivity.this, R.string.draft_restored,
+                                Toast.LENGTH_SHORT).show();
                     }
-                } else {
-                    mEditDetailsView.setVisibility(View.VISIBLE);
-                    mEditDetailsView.requestFocus();
                 }
             }
+        });
 
-            // If the data is to be updated has date, get the data.
-            if (intent.hasExtra(EXTRA_DATA_UPDATE_DATE)) {
-                date = intent.getLongExtra(EXTRA_DATA_UPDATE_DATE, 0);
-                @SuppressLint("SimpleDateFormat") SimpleDateFormat dateFormat =
-                        new SimpleDateFormat("EEE, MMM dd, hh:mm a");
-                String dateUpdateString = dateFormat.format(date);
-                // Set the text display for the date and time.
-                mDateView.setText(dateUpdateString);
-                mLayoutDateView.setVisibility(View.VISIBLE);
-            } else {
-                mLayoutDateView.setVisibility(View.GONE);
+        // Autosave the form as the user types.
+        TextWatcher autosave = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
             }
-        } else {
-            if (actionBar != null) {
-                actionBar.setTitle("Add");
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
             }
-            mEditDetailsView.setVisibility(View.GONE);
-            mLayoutDateView.setVisibility(View.GONE);
-            // Otherwise, start with empty fields.
-        }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onFormChanged();
+            }
+        };
+        mEditTaskView.addTextChangedListener(autosave);
+        mEditDetailsView.addTextChangedListener(autosave);
 
         // If the user wishes to remove the date and time in form.
         // This method will handle its click.
@@ -128,6 +129,7 @@ public class NewTaskActivity extends AppCompatActivity {
                 @Override
                 public void onClick(View v) {
                     mLayoutDateView.setVisibility(View.GONE);
+                    onFormChanged();
                 }
             });
         }
@@ -141,6 +143,68 @@ public class NewTaskActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Set the input fields to the task, or the draft, being edited.
+     */
+    private void showDraft(Task draft) {
+        String task = draft.getTask();
+        String details = draft.getDetails();
+
+        // Set the text of the input fields.
+        mEditTaskView.setText(task);
+        mEditDetailsView.setText(details);
+
+        if (task != null && !task.isEmpty()) {
+            mEditTaskView.setSelection(task.length());
+            mEditTaskView.requestFocus();
+        } else if (mViewModel.isEditing()) {
+            mEditDetailsView.setVisibility(View.VISIBLE);
+            mEditDetailsView.requestFocus();
+        }
+        if (details != null && !details.isEmpty()) {
+            mEditDetailsView.setVisibility(View.VISIBLE);
+        }
+
+        // If the task has a date, show it.
+        if (draft.getDate() != null) {
+            date = draft.getDate().getTime();
+            // Set the text display for the date and time.
+            mDateView.setText(mDateFormatter.format(date));
+            mLayoutDateView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Tell the view model the form changed, once it shows the task.
+     */
+    private void onFormChanged() {
+        if (mDraftShown) {
+            mViewModel.onEdited(mEditTaskView.getText().toString(),
+                    mEditDetailsView.getText().toString(), getDate());
+        }
+    }
+
+    /**
+     * Write the pending autosave when the editor leaves the screen.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mViewModel.flushDraft();
+    }
+
+    /**
+     * Keep the draft in the saved state, for a process death.
+     */
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        if (mDraftShown) {
+            mViewModel.setDraft(mEditTaskView.getText().toString(),
+                    mEditDetailsView.getText().toString(), getDate());
+        }
+        super.onSaveInstanceState(outState);
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu: this will add items to the action if it is present.
@@ -210,11 +274,10 @@ public class NewTaskActivity extends AppCompatActivity {
                                 calendar.set(Calendar.MINUTE, minute);
                                 date = calendar.getTimeInMillis();
 
-                                @SuppressLint("SimpleDateFormat") SimpleDateFormat dateFormat =
-                                        new SimpleDateFormat("EEE, MMM dd, hh:mm a");
-                                String dateString = dateFormat.format(date);
+                                String dateString = mDateFormatter.format(date);
                                 mLayoutDateView.setVisibility(View.VISIBLE);
                                 mDateView.setText(dateString);
+                                onFormChanged();
 
                             }
                         }, hourOfDay, minute, false);
@@ -225,41 +288,30 @@ public class NewTaskActivity extends AppCompatActivity {
     }
 
     /**
-     * Save the task.
-     * This will not actually save task but instead the task data
-     * that the user created will be send to the main activity,
-     * which is the list.
+     * The date of the form in milliseconds, 0 if the user removed it or set none.
+     */
+    private long getDate() {
+        return mLayoutDateView.getVisibility() == View.GONE ? 0 : date;
+    }
+
+    /**
+     * Save the task through the view model.
+     * The main activity is only told whether a task was saved,
+     * the list shows it once it is in the database.
      */
     private void saveTask() {
-        // Create a new intent for the reply.
-        Intent replyIntent = new Intent();
-        if (TextUtils.isEmpty(mEditTaskView.getText()) && TextUtils.isEmpty(mEditDetailsView.getText())) {
+        if (!mDraftShown) {
+            setResult(RESULT_CANCELED);
+        } else if (TextUtils.isEmpty(mEditTaskView.getText())
+                && TextUtils.isEmpty(mEditDetailsView.getText())) {
             // No task was entered, set the result accordingly.
-            setResult(RESULT_CANCELED, replyIntent);
+            mViewModel.discard();
+            setResult(RESULT_CANCELED);
         } else {
-            // Get the new task that the user entered.
-            String task = mEditTaskView.getText().toString();
-            String details = mEditDetailsView.getText().toString();
-
-            // Put the new task in the extras for the Intent.
-            replyIntent.putExtra(EXTRA_REPLY_TASK, task);
-            replyIntent.putExtra(EXTRA_REPLY_DETAILS, details);
-
-            // Set date to none, if the user remove the date and time.
-            if (mLayoutDateView.getVisibility() == View.GONE) {
-                date = 0;
-            }
-
-            replyIntent.putExtra(EXTRA_REPLY_DATE, date);
-            Bundle extras = getIntent().getExtras();
-            if (extras != null && extras.containsKey(EXTRA_DATA_ID)) {
-                int id = extras.getInt(EXTRA_DATA_ID, -1);
-                if (id != -1) {
-                    replyIntent.putExtra(EXTRA_REPLY_ID, id);
-                }
-            }
+            mViewModel.save(mEditTaskView.getText().toString(),
+                    mEditDetailsView.getText().toString(), getDate());
             // Set result status to indicate success.
-            setResult(RESULT_OK, replyIntent);
+            setResult(RESULT_OK);
         }
         finish();
     }
@@ -0,0 +1,113 @@
+package com.example.task;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats the date and time of a task, for the list and the editor.
+ *
+ * A single SimpleDateFormat is shared by the whole app, and the text of every
+ * task is kept per task id and timestamp. Binding a row that was already shown
+ * does not format anything. The formatter and the cache are rebuilt when
+ * the locale or the time zone of the device changes.
+ *
+ * SimpleDateFormat is not thread-safe, every access is synchronized.
+ */
+public class TaskDateFormatter {
+
+    private static final String PATTERN = "EEE, MMM dd, hh:mm a";
+    private static final int CACHE_SIZE = 500;
+
+    private static TaskDateFormatter INSTANCE;
+
+    private final LruCache<Integer, CachedDate> mCache = new LruCache<>(CACHE_SIZE);
+    private final Date mDate = new Date();
+    private SimpleDateFormat mFormat;
+    private volatile boolean mStale = true;
+
+    public static synchronized TaskDateFormatter getInstance(final Context context) {
+        if (INSTANCE == null) {
+            INSTANCE = new TaskDateFormatter(context.getApplicationContext());
+        }
+        return INSTANCE;
+    }
+
+    private TaskDateFormatter(Context context) {
+        // Listen for the settings the format depends on.
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                mStale = true;
+            }
+        }, filter);
+    }
+
+    /**
+     * Format the date of a task, reusing the text of the last call for the same task.
+     *
+     * @param id        The id of the task.
+     * @param timestamp The date of the task in milliseconds.
+     */
+    @NonNull
+    public synchronized String format(int id, long timestamp) {
+        refreshIfStale();
+        CachedDate cached = mCache.get(id);
+        if (cached != null && cached.timestamp == timestamp) {
+            return cached.text;
+        }
+        String text = formatLocked(timestamp);
+        mCache.put(id, new CachedDate(timestamp, text));
+        return text;
+    }
+
+    /**
+     * Format a date that does not belong to a saved task.
+     *
+     * @param timestamp The date in milliseconds.
+     */
+    @NonNull
+    public synchronized String format(long timestamp) {
+        refreshIfStale();
+        return formatLocked(timestamp);
+    }
+
+    private String formatLocked(long timestamp) {
+        mDate.setTime(timestamp);
+        return mFormat.format(mDate);
+    }
+
+    private void refreshIfStale() {
+        if (mStale) {
+            mStale = false;
+            mFormat = new SimpleDateFormat(PATTERN, Locale.getDefault());
+            mFormat.setTimeZone(TimeZone.getDefault());
+            mCache.evictAll();
+        }
+    }
+
+    /**
+     * The text of a task date, with the timestamp it was made from.
+     */
+    private static class CachedDate {
+        final long timestamp;
+        final String text;
+
+        CachedDate(long timestamp, String text) {
+            this.timestamp = timestamp;
+            this.text = text;
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.example.task;
 
-import android.annotation.SuppressLint;
+import android.content.res.ColorStateList;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,45 +8,87 @@ import android.widget.RadioButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.AsyncDifferConfig;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.example.task.arch.Task;
+import com.example.task.arch.TaskListItem;
 
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
- * Adapter for the RecyclerView that displays a list of tasks.
+ * Adapter for the RecyclerView that displays a paged list of tasks.
+ *
+ * A long click on a task starts the selection mode. In that mode a click
+ * selects or unselects a task instead of opening it. The selection is kept
+ * by task id, so it follows the tasks when the list changes.
  */
-public class TaskListAdapter extends ListAdapter<Task, TaskListAdapter.TaskViewHolder> {
+public class TaskListAdapter extends PagedListAdapter<TaskListItem, TaskListAdapter.TaskViewHolder> {
+
+    // Payload of a change of the selection, only the selected state is bound again.
+    private static final Object PAYLOAD_SELECTION = new Object();
 
     private static OnItemClickListener itemClickListener;
+    private final TaskDateFormatter mDateFormatter;
+    private final Set<Integer> mSelectedIds = new LinkedHashSet<>();
+    private boolean mSelectionMode;
 
-    protected TaskListAdapter() {
-        super(diffCallback);
+    protected TaskListAdapter(TaskDateFormatter dateFormatter) {
+        super(new AsyncDifferConfig.Builder<>(diffCallback)
+                .setBackgroundThreadExecutor(DIFF_EXECUTOR)
+                .build());
+        this.mDateFormatter = dateFormatter;
+        setHasStableIds(true);
     }
 
+    /**
+     * The lists are diffed on this thread, away from the main thread
+     * and from the threads loading the pages.
+     */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
     /**
      * This constant is a callback for calculating the difference between
-     * two non-null item in the list.
+     * two non-null item in the list. Only a row whose shown content
+     * changed is bound again.
      */
-    private static final DiffUtil.ItemCallback<Task> diffCallback = new DiffUtil.ItemCallback<Task>() {
+    static final DiffUtil.ItemCallback<TaskListItem> diffCallback =
+            new DiffUtil.ItemCallback<TaskListItem>() {
 
         @Override
-        public boolean areItemsTheSame(@NonNull Task oldItem, @NonNull Task newItem) {
-            return oldItem.getId() == newItem.getId();
+        public boolean areItemsTheSame(@NonNull TaskListItem oldItem,
+                                       @NonNull TaskListItem newItem) {
+            return oldItem.id == newItem.id;
         }
 
-        @SuppressLint("DiffUtilEquals")
         @Override
-        public boolean areContentsTheSame(@NonNull Task oldItem, @NonNull Task newItem) {
-            return oldItem.getTask().equals(newItem.getTask()) &&
-                    oldItem.getDetails().equals(newItem.getDetails()) &&
-                    oldItem.getDate() == newItem.getDate();
+        public boolean areContentsTheSame(@NonNull TaskListItem oldItem,
+                                          @NonNull TaskListItem newItem) {
+            return oldItem.hasSameContent(newItem);
         }
     };
 
+    /**
+     * The id of a task is its stable id, so the RecyclerView can keep
+     * the views of the tasks that did not change.
+     */
+    @Override
+    public long getItemId(int position) {
+        TaskListItem item = getItem(position);
+        return item != null ? item.id : RecyclerView.NO_ID;
+    }
+
     @NonNull
     @Override
     public TaskViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -55,23 +97,43 @@ public class TaskListAdapter extends ListAdapter<Task, TaskListAdapter.TaskViewH
         return new TaskViewHolder(itemView);
     }
 
+    /**
+     * Binds only the selected state when the selection changed.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull TaskViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_SELECTION) {
+                payloads = Collections.emptyList();
+                break;
+            }
+        }
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            bindSelection(holder, getItem(position));
+        }
+    }
+
     /**
      * Called by RecyclerView to display the data at the specified position.
      */
     @Override
     public void onBindViewHolder(@NonNull TaskViewHolder holder, int position) {
         // Get the position of the task item in the date set.
-        Task currentTask = getItem(position);
-        holder.deleteItemView.setChecked(false);
+        TaskListItem currentTask = getItem(position);
+        bindSelection(holder, currentTask);
+        if (currentTask == null) {
+            return; // Not loaded yet, the row is bound again once its page arrives.
+        }
 
-        // Set the text of the task and details.
-        holder.taskItemView.setText(currentTask.getTask());
-        holder.detailsItemView.setText(currentTask.getDetails());
+        // Set the text of the task and the preview of its details.
+        holder.taskItemView.setText(currentTask.task);
+        holder.detailsItemView.setText(currentTask.preview);
 
-        if (currentTask.getDate() != null) {
-            @SuppressLint("SimpleDateFormat") SimpleDateFormat dateFormat =
-                    new SimpleDateFormat("EEE, MMM dd, hh:mm a");
-            String date = dateFormat.format(currentTask.getDate());
+        if (currentTask.date != null) {
+            String date = mDateFormatter.format(currentTask.id, currentTask.date.getTime());
             holder.dateItemView.setText(date);
             holder.dateItemView.setVisibility(View.VISIBLE);
         } else {
@@ -91,15 +153,76 @@ public class TaskListAdapter extends ListAdapter<Task, TaskListAdapter.TaskViewH
         }
     }
 
+    private void bindSelection(TaskViewHolder holder, @Nullable TaskListItem item) {
+        boolean selected = item != null && mSelectedIds.contains(item.id);
+        holder.deleteItemView.setChecked(selected);
+        holder.cardView.setCardBackgroundColor(selected
+                ? holder.selectedColor : holder.defaultColor);
+    }
+
+    /**
+     * Whether the list is in the selection mode.
+     */
+    public boolean isSelectionMode() {
+        return mSelectionMode;
+    }
+
+    /**
+     * Starts the selection mode with the given tasks selected.
+     */
+    public void startSelection(Collection<Integer> ids) {
+        mSelectionMode = true;
+        mSelectedIds.clear();
+        mSelectedIds.addAll(ids);
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
+    /**
+     * Selects or unselects a task, in the selection mode.
+     */
+    public void toggleSelection(int position) {
+        TaskListItem item = getItem(position);
+        if (!mSelectionMode || item == null) {
+            return;
+        }
+        if (!mSelectedIds.remove(item.id)) {
+            mSelectedIds.add(item.id);
+        }
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+        if (itemClickListener != null) {
+            itemClickListener.onSelectionChanged(mSelectedIds.size());
+        }
+    }
+
+    /**
+     * The ids of the selected tasks, in the order they were selected.
+     */
+    public List<Integer> getSelectedIds() {
+        return new ArrayList<>(mSelectedIds);
+    }
+
+    /**
+     * Leaves the selection mode and unselects all the tasks.
+     */
+    public void finishSelection() {
+        if (!mSelectionMode) {
+            return;
+        }
+        mSelectionMode = false;
+        mSelectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
     /**
      * Gets the task at a given position.
      * This method is useful for identifying which task
      * was clicked or swiped in methods that handle user events.
      *
      * @param position The position of the task in the RecyclerView
-     * @return The task at the given position
+     * @return The row of the task at the given position, or null if it is not loaded yet
      */
-    public Task getTaskAtPosition(int position) {
+    @Nullable
+    public TaskListItem getTaskAtPosition(int position) {
         return getItem(position);
     }
 
@@ -114,9 +237,15 @@ public class TaskListAdapter extends ListAdapter<Task, TaskListAdapter.TaskViewH
         private TextView detailsItemView;
         private TextView dateItemView;
         private RadioButton deleteItemView;
+        private CardView cardView;
+        private ColorStateList defaultColor;
+        private int selectedColor;
 
         public TaskViewHolder(View itemView) {
             super(itemView);
+            cardView = (CardView) itemView;
+            defaultColor = cardView.getCardBackgroundColor();
+            selectedColor = ContextCompat.getColor(itemView.getContext(), R.color.colorSelected);
 
             // Get the instance of the RecyclerView item views.
             taskItemView = itemView.findViewById(R.id.textView_task);
@@ -128,17 +257,47 @@ public class TaskListAdapter extends ListAdapter<Task, TaskListAdapter.TaskViewH
                 @Override
                 public void onClick(View view) {
                     int position = getAdapterPosition();
-                    if (itemClickListener != null && position != RecyclerView.NO_POSITION) {
-                        itemClickListener.onItemClick(getItem(position));
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
+                    if (mSelectionMode) {
+                        toggleSelection(position);
+                    } else if (itemClickListener != null) {
+                        TaskListItem item = getItem(position);
+                        if (item != null) {
+                            itemClickListener.onItemClick(item);
+                        }
                     }
                 }
             });
 
+            itemView.setOnLongClickListener(new View.OnLongClickListener() {
+                @Override
+                public boolean onLongClick(View view) {
+                    int position = getAdapterPosition();
+                    if (mSelectionMode || itemClickListener == null
+                            || position == RecyclerView.NO_POSITION) {
+                        return false;
+                    }
+                    TaskListItem item = getItem(position);
+                    if (item == null) {
+                        return false;
+                    }
+                    itemClickListener.onItemLongClick(item);
+                    return true;
+                }
+            });
+
             deleteItemView.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
                     int position = getAdapterPosition();
-                    if (itemClickListener != null && position != RecyclerView.NO_POSITION) {
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
+                    if (mSelectionMode) {
+                        toggleSelection(position);
+                    } else if (itemClickListener != null) {
                         itemClickListener.onDeleteClick(position);
                     }
                 }
@@ -150,8 +309,10 @@ public class TaskListAdapter extends ListAdapter<Task, TaskListAdapter.TaskViewH
      * An interface to invoke the user click.
      */
     public interface OnItemClickListener {
-        void onItemClick(Task task);
+        void onItemClick(TaskListItem item);
         void onDeleteClick(int position);
+        void onItemLongClick(TaskListItem item);
+        void onSelectionChanged(int selectedCount);
     }
 
     /**
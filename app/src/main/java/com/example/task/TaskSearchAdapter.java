@@ -0,0 +1,124 @@
+package com.example.task;
+
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.task.arch.TaskSearchResult;
+
+import java.util.Objects;
+
+/**
+ * Adapter for the RecyclerView that displays the results of a search,
+ * the task and a snippet of the matching text with the matching terms in bold.
+ */
+public class TaskSearchAdapter extends ListAdapter<TaskSearchResult,
+        TaskSearchAdapter.SearchViewHolder> {
+
+    private OnResultClickListener mClickListener;
+
+    TaskSearchAdapter() {
+        super(diffCallback);
+    }
+
+    private static final DiffUtil.ItemCallback<TaskSearchResult> diffCallback =
+            new DiffUtil.ItemCallback<TaskSearchResult>() {
+
+        @Override
+        public boolean areItemsTheSame(@NonNull TaskSearchResult oldItem,
+                                       @NonNull TaskSearchResult newItem) {
+            return oldItem.task.getId() == newItem.task.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull TaskSearchResult oldItem,
+                                          @NonNull TaskSearchResult newItem) {
+            return oldItem.task.hasSameContent(newItem.task)
+                    && Objects.equals(oldItem.snippet, newItem.snippet);
+        }
+    };
+
+    @NonNull
+    @Override
+    public SearchViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.search_result_item, parent, false);
+        return new SearchViewHolder(itemView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull SearchViewHolder holder, int position) {
+        TaskSearchResult result = getItem(position);
+        holder.taskItemView.setText(result.task.getTask());
+        holder.taskItemView.setVisibility(result.task.getTask() == null
+                || result.task.getTask().isEmpty() ? View.GONE : View.VISIBLE);
+        holder.snippetItemView.setText(highlight(result.snippet));
+    }
+
+    /**
+     * The snippet with the marked terms in bold, and without the marks.
+     */
+    static CharSequence highlight(String snippet) {
+        SpannableStringBuilder text = new SpannableStringBuilder();
+        if (snippet == null) {
+            return text;
+        }
+        int index = 0;
+        while (index < snippet.length()) {
+            int start = snippet.indexOf(TaskSearchResult.SNIPPET_START, index);
+            int end = start < 0 ? -1 : snippet.indexOf(TaskSearchResult.SNIPPET_END,
+                    start + TaskSearchResult.SNIPPET_START.length());
+            if (end < 0) {
+                text.append(snippet, index, snippet.length());
+                break;
+            }
+            text.append(snippet, index, start);
+            int boldStart = text.length();
+            text.append(snippet, start + TaskSearchResult.SNIPPET_START.length(), end);
+            text.setSpan(new StyleSpan(Typeface.BOLD), boldStart, text.length(),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            index = end + TaskSearchResult.SNIPPET_END.length();
+        }
+        return text;
+    }
+
+    void setOnResultClickListener(OnResultClickListener listener) {
+        mClickListener = listener;
+    }
+
+    public interface OnResultClickListener {
+        void onResultClick(TaskSearchResult result);
+    }
+
+    class SearchViewHolder extends RecyclerView.ViewHolder {
+
+        private final TextView taskItemView;
+        private final TextView snippetItemView;
+
+        SearchViewHolder(View itemView) {
+            super(itemView);
+            taskItemView = itemView.findViewById(R.id.textView_task);
+            snippetItemView = itemView.findViewById(R.id.textView_snippet);
+
+            itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    int position = getAdapterPosition();
+                    if (mClickListener != null && position != RecyclerView.NO_POSITION) {
+                        mClickListener.onResultClick(getItem(position));
+                    }
+                }
+            });
+        }
+    }
+}
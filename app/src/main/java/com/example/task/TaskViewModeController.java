@@ -0,0 +1,75 @@
+package com.example.task;
+
+import android.content.Context;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.StaggeredGridLayoutManager;
+
+/**
+ * Switches the task list between the linear and the staggered layout.
+ *
+ * Both layout managers are created once and kept. The layout manager of the
+ * RecyclerView is only replaced when the mode changes, and the first visible
+ * task stays in view across the swap. The RecyclerView gets a larger pool of
+ * recycled rows, so the rows removed by a swap are bound again instead of
+ * being inflated again.
+ */
+class TaskViewModeController {
+
+    // Number of rows kept for reuse, enough for two screens of the staggered grid.
+    private static final int MAX_RECYCLED_ROWS = 40;
+    private static final int SPAN_COUNT = 2;
+
+    private final RecyclerView mRecyclerView;
+    private final LinearLayoutManager mLinearLayoutManager;
+    private final StaggeredGridLayoutManager mStaggeredLayoutManager;
+    private Boolean mLinear;
+
+    TaskViewModeController(Context context, RecyclerView recyclerView) {
+        this.mRecyclerView = recyclerView;
+        this.mLinearLayoutManager = new LinearLayoutManager(context);
+        this.mStaggeredLayoutManager = new StaggeredGridLayoutManager(SPAN_COUNT,
+                StaggeredGridLayoutManager.VERTICAL);
+
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.setMaxRecycledViews(0, MAX_RECYCLED_ROWS);
+        mRecyclerView.setRecycledViewPool(pool);
+    }
+
+    /**
+     * Show the list in the given mode. Does nothing if the list is already in it.
+     *
+     * @param linear True for the linear list, false for the staggered grid.
+     */
+    void setLinear(boolean linear) {
+        if (mLinear != null && mLinear == linear) {
+            return;
+        }
+        int firstVisible = findFirstVisiblePosition();
+        mLinear = linear;
+        mRecyclerView.setLayoutManager(linear ? mLinearLayoutManager : mStaggeredLayoutManager);
+        if (firstVisible != RecyclerView.NO_POSITION) {
+            mRecyclerView.scrollToPosition(firstVisible);
+        }
+    }
+
+    private int findFirstVisiblePosition() {
+        RecyclerView.LayoutManager current = mRecyclerView.getLayoutManager();
+        if (current == mLinearLayoutManager) {
+            return mLinearLayoutManager.findFirstVisibleItemPosition();
+        }
+        if (current == mStaggeredLayoutManager) {
+            int[] positions = mStaggeredLayoutManager.findFirstVisibleItemPositions(null);
+            int first = RecyclerView.NO_POSITION;
+            for (int position : positions) {
+                if (position != RecyclerView.NO_POSITION
+                        && (first == RecyclerView.NO_POSITION || position < first)) {
+                    first = position;
+                }
+            }
+            return first;
+        }
+        return RecyclerView.NO_POSITION;
+    }
+}
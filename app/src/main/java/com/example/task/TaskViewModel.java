@@ -1,15 +1,28 @@
 package com.example.task;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.paging.PagedList;
 
 import com.example.task.arch.Task;
+import com.example.task.arch.TaskDraft;
+import com.example.task.arch.TaskListItem;
 import com.example.task.arch.TaskRepository;
+import com.example.task.arch.TaskSearchResult;
+import com.example.task.arch.TaskWriteExecutor;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The TaskViewModel provides the interface between the UI
@@ -17,21 +30,101 @@ import java.util.List;
  */
 public class TaskViewModel extends AndroidViewModel {
 
+    // Paging configuration of the task list
+    static final int PAGE_SIZE = 30;
+    static final int PREFETCH_DISTANCE = 60;
+
+    // Search configuration
+    static final long SEARCH_DEBOUNCE_MILLIS = 300;
+    static final int SEARCH_LIMIT = 200;
+
     // Member variables
     private TaskRepository mRepository;
-    private LiveData<List<Task>> mAllTasks;
+    private LiveData<PagedList<TaskListItem>> mAllTasks;
+    private final MutableLiveData<List<TaskSearchResult>> mSearchResults = new MutableLiveData<>();
+    private final ExecutorService mSearchExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private String mSearchQuery = "";
+    // Incremented by every query, a search only posts its results if still the latest.
+    private final AtomicInteger mSearchSequence = new AtomicInteger();
+
+    // Runs the search once the user stopped typing.
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final String query = mSearchQuery;
+            final int sequence = mSearchSequence.get();
+            mSearchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Replaced while waiting for the executor, not worth running.
+                    if (sequence != mSearchSequence.get()) {
+                        return;
+                    }
+                    List<TaskSearchResult> results = mRepository.search(query, SEARCH_LIMIT);
+                    // A running query is not interrupted, its results are dropped if it
+                    // was replaced meanwhile.
+                    if (sequence == mSearchSequence.get()) {
+                        mSearchResults.postValue(results);
+                    }
+                }
+            });
+        }
+    };
 
     public TaskViewModel(@NonNull Application application) {
         super(application);
-        mRepository = new TaskRepository(application);
-        mAllTasks = mRepository.getAllTasks();
+        mRepository = TaskRepository.getRepository(application);
+        mAllTasks = mRepository.getPagedListItems(PAGE_SIZE, PREFETCH_DISTANCE);
     }
 
     // Methods that will be used in the main activity.
-    LiveData<List<Task>> getAllTasks() {
+    LiveData<PagedList<TaskListItem>> getAllTasks() {
         return mAllTasks;
     }
 
+    /**
+     * The first tasks of the list saved by the last run, null if there are none.
+     */
+    @Nullable
+    PagedList<TaskListItem> getSnapshot() {
+        return mRepository.getSnapshot(PAGE_SIZE);
+    }
+
+    /**
+     * Loads the draft of the editor autosaved last, null if there is none.
+     */
+    void getLatestDraft(@NonNull TaskWriteExecutor.Callback<TaskDraft> callback) {
+        mRepository.getLatestDraft(callback);
+    }
+
+    LiveData<List<TaskSearchResult>> getSearchResults() {
+        return mSearchResults;
+    }
+
+    /**
+     * Search the tasks as the user types. The search runs once the query
+     * has not changed for SEARCH_DEBOUNCE_MILLIS, and the results of a
+     * search for an older query are dropped.
+     */
+    void setSearchQuery(String query) {
+        mSearchQuery = query != null ? query.trim() : "";
+        mSearchSequence.incrementAndGet();
+        mHandler.removeCallbacks(mSearchRunnable);
+        if (mSearchQuery.isEmpty()) {
+            mSearchResults.setValue(Collections.<TaskSearchResult>emptyList());
+        } else {
+            mHandler.postDelayed(mSearchRunnable, SEARCH_DEBOUNCE_MILLIS);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        mHandler.removeCallbacks(mSearchRunnable);
+        mSearchExecutor.shutdownNow();
+    }
+
     public void insert(Task task) {
         mRepository.insert(task);
     }
@@ -44,7 +137,52 @@ public class TaskViewModel extends AndroidViewModel {
         mRepository.delete(task);
     }
 
+    /**
+     * Inserts the tasks at once, the callback receives their row ids.
+     */
+    public void insert(List<Task> tasks, @Nullable TaskWriteExecutor.Callback<List<Long>> callback) {
+        mRepository.insert(tasks, callback);
+    }
+
+    /**
+     * Updates the tasks at once, the callback receives the number of updated tasks.
+     */
+    public void update(List<Task> tasks, @Nullable TaskWriteExecutor.Callback<Integer> callback) {
+        mRepository.update(tasks, callback);
+    }
+
+    /**
+     * Deletes the tasks with the given ids at once,
+     * the callback receives the number of deleted tasks.
+     */
+    public void deleteByIds(List<Integer> ids, @Nullable TaskWriteExecutor.Callback<Integer> callback) {
+        mRepository.deleteByIds(ids, callback);
+    }
+
+    /**
+     * Marks the tasks with the given ids completed, or not completed again to undo it.
+     * The callback receives the number of updated tasks.
+     */
+    public void setCompleted(List<Integer> ids, boolean completed,
+                             @Nullable TaskWriteExecutor.Callback<Integer> callback) {
+        mRepository.setCompleted(ids, completed, callback);
+    }
+
     public void deleteAll() {
         mRepository.deleteAll();
     }
+
+    /**
+     * Whether some local changes were not uploaded yet.
+     */
+    void hasLocalChanges(@NonNull TaskWriteExecutor.Callback<Boolean> callback) {
+        mRepository.hasLocalChanges(callback);
+    }
+
+    /**
+     * Deletes the data of the user signing out.
+     */
+    void clearLocalData() {
+        mRepository.clearLocalData();
+    }
 }
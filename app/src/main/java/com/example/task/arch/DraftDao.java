@@ -0,0 +1,37 @@
+package com.example.task.arch;
+
+import androidx.annotation.Nullable;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+/**
+ * Data Access Object (DAO) for the drafts of the editor.
+ */
+@Dao
+public abstract class DraftDao {
+
+    /**
+     * Saves the draft, replacing the previous one of the same task.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void put(TaskDraft draft);
+
+    @Nullable
+    @Query("SELECT * FROM draft_table WHERE task_id = :taskId")
+    public abstract TaskDraft get(int taskId);
+
+    /**
+     * The draft autosaved last, null if there is none.
+     */
+    @Nullable
+    @Query("SELECT * FROM draft_table ORDER BY updated_at DESC LIMIT 1")
+    public abstract TaskDraft getLatest();
+
+    @Query("DELETE FROM draft_table WHERE task_id = :taskId")
+    public abstract int delete(int taskId);
+
+    @Query("DELETE FROM draft_table")
+    public abstract int deleteAll();
+}
@@ -0,0 +1,41 @@
+package com.example.task.arch;
+
+/**
+ * Hybrid logical clock of the task changes.
+ *
+ * A time is the wall clock in milliseconds shifted by LOGICAL_BITS, plus a
+ * counter in the low bits. Every time it gives is greater than the previous
+ * ones and than every remote time it observed, even if the wall clock goes
+ * back or two changes happen in the same millisecond, so the times of the
+ * changes of a task are ordered the same way on every device.
+ */
+public class HybridLogicalClock {
+
+    static final int LOGICAL_BITS = 16;
+
+    private long mLast;
+
+    /**
+     * A time for a local change.
+     */
+    public synchronized long now() {
+        mLast = Math.max(mLast + 1, System.currentTimeMillis() << LOGICAL_BITS);
+        return mLast;
+    }
+
+    /**
+     * Takes a remote time into account, the next local times will be greater.
+     */
+    public synchronized void observe(long remote) {
+        if (remote > mLast) {
+            mLast = remote;
+        }
+    }
+
+    /**
+     * The time of the clock for a wall clock time in milliseconds.
+     */
+    public static long fromMillis(long millis) {
+        return millis << LOGICAL_BITS;
+    }
+}
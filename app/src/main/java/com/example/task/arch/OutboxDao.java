@@ -0,0 +1,115 @@
+package com.example.task.arch;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the outbox of remote writes.
+ */
+@Dao
+public abstract class OutboxDao {
+
+    /**
+     * Queues a write of the document, coalesced with the one already pending
+     * for it: merged fields are added to the pending ones, a full write
+     * replaces them. A write in backoff keeps its schedule.
+     *
+     * @param path  Path of the document.
+     * @param data  Fields of the document, as a JSON object.
+     * @param merge Whether the fields are merged into the document.
+     * @param now   The current time, in milliseconds.
+     */
+    @Transaction
+    public void enqueue(String path, String data, boolean merge, long now) {
+        OutboxOp pending = get(path);
+        if (pending == null) {
+            put(new OutboxOp(path, data, merge, 0, now, 0, now));
+            return;
+        }
+        if (merge) {
+            data = mergeFields(pending.getData(), data);
+            merge = pending.isMerge();
+        }
+        put(new OutboxOp(path, data, merge, pending.getRevision() + 1, pending.getCreatedAt(),
+                pending.getAttempts(), pending.getNextAttemptAt()));
+    }
+
+    @Nullable
+    @Query("SELECT * FROM outbox_table WHERE path = :path")
+    public abstract OutboxOp get(String path);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void put(OutboxOp op);
+
+    /**
+     * The writes due at the given time, the most overdue first.
+     */
+    @Query("SELECT * FROM outbox_table WHERE next_attempt_at <= :now "
+            + "ORDER BY next_attempt_at LIMIT :limit")
+    public abstract List<OutboxOp> getDue(long now, int limit);
+
+    /**
+     * Time of the next write due, null if the outbox is empty.
+     */
+    @Nullable
+    @Query("SELECT MIN(next_attempt_at) FROM outbox_table")
+    public abstract Long getNextAttemptAt();
+
+    @Query("SELECT COUNT(*) FROM outbox_table")
+    public abstract LiveData<Integer> getPendingCount();
+
+    @Query("DELETE FROM outbox_table")
+    public abstract int deleteAll();
+
+    /**
+     * Removes an acknowledged write, unless a newer revision was queued since.
+     *
+     * @return The number of removed rows.
+     */
+    @Query("DELETE FROM outbox_table WHERE path = :path AND revision = :revision")
+    public abstract int deleteSent(String path, int revision);
+
+    /**
+     * Gives up a write that cannot succeed, unless a newer revision was queued since.
+     *
+     * @return The number of removed rows.
+     */
+    @Query("DELETE FROM outbox_table WHERE path = :path AND revision = :revision")
+    public abstract int drop(String path, int revision);
+
+    /**
+     * Counts a failed attempt and schedules the next one, unless a newer revision
+     * was queued since: that one is sent as soon as possible instead.
+     *
+     * @return The number of updated rows.
+     */
+    @Query("UPDATE outbox_table SET attempts = attempts + 1, next_attempt_at = :nextAttemptAt "
+            + "WHERE path = :path AND revision = :revision")
+    public abstract int retryLater(String path, int revision, long nextAttemptAt);
+
+    private static String mergeFields(String pending, String data) {
+        try {
+            JSONObject fields = new JSONObject(pending);
+            JSONObject update = new JSONObject(data);
+            Iterator<String> keys = update.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                fields.put(key, update.get(key));
+            }
+            return fields.toString();
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("The outbox only holds JSON objects.", e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.task.arch;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A write of a remote document that was not acknowledged yet.
+ *
+ * There is at most one pending write per document: a new write of the same
+ * document is coalesced into it by OutboxDao.enqueue(), so a burst of edits
+ * costs a single request once the network is back.
+ */
+@Entity(tableName = "outbox_table", indices = {@Index({"next_attempt_at"})})
+public class OutboxOp {
+
+    // Path of the document, "user/{uid}" for instance.
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "path")
+    private String mPath;
+
+    // Fields of the document, as a JSON object of plain values.
+    @NonNull
+    @ColumnInfo(name = "data")
+    private String mData;
+
+    // Whether the fields are merged into the document instead of replacing it.
+    @ColumnInfo(name = "merge")
+    private boolean mMerge;
+
+    // Incremented by each coalesced write, an acknowledged revision
+    // only removes the operation if no write came in meanwhile.
+    @ColumnInfo(name = "revision")
+    private int mRevision;
+
+    // Time of the first write not acknowledged yet, in milliseconds.
+    @ColumnInfo(name = "created_at")
+    private long mCreatedAt;
+
+    @ColumnInfo(name = "attempts")
+    private int mAttempts;
+
+    @ColumnInfo(name = "next_attempt_at")
+    private long mNextAttemptAt;
+
+    public OutboxOp(@NonNull String mPath, @NonNull String mData, boolean mMerge, int mRevision,
+                    long mCreatedAt, int mAttempts, long mNextAttemptAt) {
+        this.mPath = mPath;
+        this.mData = mData;
+        this.mMerge = mMerge;
+        this.mRevision = mRevision;
+        this.mCreatedAt = mCreatedAt;
+        this.mAttempts = mAttempts;
+        this.mNextAttemptAt = mNextAttemptAt;
+    }
+
+    @NonNull
+    public String getPath() {
+        return mPath;
+    }
+
+    @NonNull
+    public String getData() {
+        return mData;
+    }
+
+    public boolean isMerge() {
+        return mMerge;
+    }
+
+    public int getRevision() {
+        return mRevision;
+    }
+
+    public long getCreatedAt() {
+        return mCreatedAt;
+    }
+
+    public int getAttempts() {
+        return mAttempts;
+    }
+
+    public long getNextAttemptAt() {
+        return mNextAttemptAt;
+    }
+}
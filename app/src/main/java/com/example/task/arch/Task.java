@@ -4,15 +4,32 @@ import androidx.annotation.Nullable;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.TypeConverters;
 
 import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
 
 /**
- * Entity class that represents a task in the database
+ * Entity class that represents a task in the database.
+ * The list shows the tasks not completed, ordered by date then id. The index on
+ * (completed, date, id) lets SQLite read it in order instead of sorting the whole table.
+ * Tasks without a date sort first, as NULL is the smallest value in SQLite.
+ *
+ * A completed task stays in the table until TaskPurgeWorker removes it,
+ * so completing a task can be undone.
+ *
+ * For the sync, a task is known across devices by its uuid. A local change
+ * sets updated_at and the dirty flag, the sync uploads the dirty tasks only.
+ * Each field edited on its own keeps the HybridLogicalClock time of its
+ * last change, so edits of different fields on two devices are both kept.
  */
-@Entity(tableName = "task_table")
+@Entity(tableName = "task_table", indices = {
+        @Index({"completed", "date", "id"}),
+        @Index(value = {"uuid"}, unique = true),
+        @Index({"dirty"})})
 public class Task {
 
     @PrimaryKey(autoGenerate = true)
@@ -28,15 +45,66 @@ public class Task {
     @ColumnInfo(name = "date")
     private Date mDate;
 
+    // Hash of the task, details and date, computed again by their setters.
+    // Two reads of the same row can be compared without comparing the text.
+    @ColumnInfo(name = "content_hash")
+    private int mContentHash;
+
+    @ColumnInfo(name = "completed", defaultValue = "0")
+    private boolean mCompleted;
+
+    // When the task was completed, null while it is not.
+    @TypeConverters(DateConverter.class)
+    @ColumnInfo(name = "completed_at")
+    private Date mCompletedAt;
+
+    // Id of the task on every device, null until set by TaskBackfill for older tasks.
+    @ColumnInfo(name = "uuid")
+    private String mUuid;
+
+    // HybridLogicalClock time of the last change of the task.
+    @ColumnInfo(name = "updated_at", defaultValue = "0")
+    private long mUpdatedAt;
+
+    // HybridLogicalClock times of the last change of each field.
+    @ColumnInfo(name = "task_hlc", defaultValue = "0")
+    private long mTaskHlc;
+
+    @ColumnInfo(name = "details_hlc", defaultValue = "0")
+    private long mDetailsHlc;
+
+    @ColumnInfo(name = "date_hlc", defaultValue = "0")
+    private long mDateHlc;
+
+    // Time of the last change of completed and completed_at, which change together.
+    @ColumnInfo(name = "completed_hlc", defaultValue = "0")
+    private long mCompletedHlc;
+
+    // Whether the task changed since it was last uploaded.
+    @ColumnInfo(name = "dirty", defaultValue = "0")
+    private boolean mDirty;
+
+    /**
+     * Used by Room to read a row, every column is then set. It does nothing,
+     * the hash and the uuid are read rather than computed.
+     */
+    public Task() {
+    }
+
+    /**
+     * A new task, with a uuid of its own.
+     */
+    @Ignore
     public Task(String mTask, String mDetails, @Nullable Date mDate) {
         this.mTask = mTask;
         this.mDetails = mDetails;
         this.mDate = mDate;
+        this.mContentHash = computeContentHash(mTask, mDetails, mDate);
+        this.mUuid = UUID.randomUUID().toString();
     }
 
     /**
-     * This constructor is annotated using @Ignore, because Room
-     * expects only one constructor by default in an entity class.
+     * An existing task, by id. It gets no uuid, the row keeps its own.
      */
     @Ignore
     public Task(int id, String mTask, String mDetails, Date mDate) {
@@ -44,17 +112,18 @@ public class Task {
         this.mTask = mTask;
         this.mDetails = mDetails;
         this.mDate = mDate;
+        this.mContentHash = computeContentHash(mTask, mDetails, mDate);
     }
 
+    /**
+     * A new task without a date, with a uuid of its own.
+     */
     @Ignore
     public Task(String mTask, String mDetails) {
         this.mTask = mTask;
         this.mDetails = mDetails;
-    }
-
-    @Ignore
-    public Task() {
-        // Empty constructor.
+        this.mContentHash = computeContentHash(mTask, mDetails, null);
+        this.mUuid = UUID.randomUUID().toString();
     }
 
     public int getId() {
@@ -69,13 +138,140 @@ public class Task {
         return mTask;
     }
 
+    public void setTask(String task) {
+        this.mTask = task;
+        mContentHash = computeContentHash(mTask, mDetails, mDate);
+    }
 
     public String getDetails() {
         return mDetails;
     }
 
+    public void setDetails(String details) {
+        this.mDetails = details;
+        mContentHash = computeContentHash(mTask, mDetails, mDate);
+    }
 
     public Date getDate() {
         return mDate;
     }
+
+    public void setDate(Date date) {
+        this.mDate = date;
+        mContentHash = computeContentHash(mTask, mDetails, mDate);
+    }
+
+    public int getContentHash() {
+        return mContentHash;
+    }
+
+    public void setContentHash(int contentHash) {
+        this.mContentHash = contentHash;
+    }
+
+    public boolean isCompleted() {
+        return mCompleted;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.mCompleted = completed;
+    }
+
+    @Nullable
+    public Date getCompletedAt() {
+        return mCompletedAt;
+    }
+
+    public void setCompletedAt(@Nullable Date completedAt) {
+        this.mCompletedAt = completedAt;
+    }
+
+    public String getUuid() {
+        return mUuid;
+    }
+
+    public void setUuid(String uuid) {
+        this.mUuid = uuid;
+    }
+
+    public long getUpdatedAt() {
+        return mUpdatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.mUpdatedAt = updatedAt;
+    }
+
+    public boolean isDirty() {
+        return mDirty;
+    }
+
+    public void setDirty(boolean dirty) {
+        this.mDirty = dirty;
+    }
+
+    public long getTaskHlc() {
+        return mTaskHlc;
+    }
+
+    public void setTaskHlc(long taskHlc) {
+        this.mTaskHlc = taskHlc;
+    }
+
+    public long getDetailsHlc() {
+        return mDetailsHlc;
+    }
+
+    public void setDetailsHlc(long detailsHlc) {
+        this.mDetailsHlc = detailsHlc;
+    }
+
+    public long getDateHlc() {
+        return mDateHlc;
+    }
+
+    public void setDateHlc(long dateHlc) {
+        this.mDateHlc = dateHlc;
+    }
+
+    public long getCompletedHlc() {
+        return mCompletedHlc;
+    }
+
+    public void setCompletedHlc(long completedHlc) {
+        this.mCompletedHlc = completedHlc;
+    }
+
+    /**
+     * Records a local change of every field at the given HybridLogicalClock time,
+     * to be uploaded by the sync.
+     */
+    public void markChanged(long hlc) {
+        this.mTaskHlc = hlc;
+        this.mDetailsHlc = hlc;
+        this.mDateHlc = hlc;
+        this.mCompletedHlc = hlc;
+        this.mUpdatedAt = hlc;
+        this.mDirty = true;
+    }
+
+    /**
+     * Whether this task shows the same task, details and date as the other one.
+     * The content hashes are compared first, the text only when they match.
+     */
+    public boolean hasSameContent(Task other) {
+        if (mContentHash != other.mContentHash) {
+            return false;
+        }
+        return Objects.equals(mTask, other.mTask)
+                && Objects.equals(mDetails, other.mDetails)
+                && Objects.equals(mDate, other.mDate);
+    }
+
+    public static int computeContentHash(String task, String details, @Nullable Date date) {
+        int hash = task != null ? task.hashCode() : 0;
+        hash = 31 * hash + (details != null ? details.hashCode() : 0);
+        long time = date != null ? date.getTime() : 0;
+        return 31 * hash + (int) (time ^ (time >>> 32));
+    }
 }
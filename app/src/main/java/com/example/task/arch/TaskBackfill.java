@@ -0,0 +1,227 @@
+package com.example.task.arch;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.util.Date;
+
+/**
+ * Fills the data a migration added for the rows that already existed,
+ * a chunk of CHUNK_SIZE rows per transaction.
+ *
+ * A migration records the range of ids to process in the task_backfill table.
+ * The chunks run on the TaskWriteExecutor, so the writes of the user are
+ * interleaved with them and the upgrade never holds the database for long.
+ * The progress is committed with each chunk, a backfill resumes where it
+ * stopped if the app is killed.
+ */
+class TaskBackfill {
+
+    // Names of the backfills, they run in this order.
+    static final String CONTENT_HASH = "content_hash";
+    static final String FTS = "task_fts";
+    static final String UUID = "uuid";
+
+    static final int CHUNK_SIZE = 500;
+
+    // Prefixes of the triggers keeping task_fts in sync: the ones Room creates,
+    // and the guarded ones used while the index is being filled.
+    private static final String ROOM_TRIGGER_PREFIX = "room_fts_content_sync_task_fts_";
+    private static final String GUARDED_TRIGGER_PREFIX = "task_fts_backfill_";
+    private static final String[] TRIGGERS =
+            {"BEFORE_UPDATE", "BEFORE_DELETE", "AFTER_UPDATE", "AFTER_INSERT"};
+
+    private TaskBackfill() {
+        // Static helpers only.
+    }
+
+    /**
+     * Records a backfill of every existing row. Called by a migration.
+     */
+    static void start(@NonNull SupportSQLiteDatabase db, @NonNull String name) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `task_backfill` (`name` TEXT NOT NULL, "
+                + "`next_id` INTEGER NOT NULL, `end_id` INTEGER NOT NULL, PRIMARY KEY(`name`))");
+        db.execSQL("INSERT OR REPLACE INTO `task_backfill` (`name`, `next_id`, `end_id`) "
+                + "SELECT ?, 0, IFNULL(MAX(`id`), -1) FROM `task_table`", new Object[]{name});
+    }
+
+    /**
+     * Puts the guarded triggers back in charge while task_fts is being filled.
+     * Room recreates its own triggers after every upgrade, once the migrations
+     * ran, so this is called each time the database is opened.
+     */
+    static void onOpen(@NonNull SupportSQLiteDatabase db) {
+        if (isPending(db, FTS)) {
+            guardFtsTriggers(db);
+        }
+    }
+
+    /**
+     * Runs the pending backfills one chunk at a time on the writer.
+     */
+    static void schedule(@NonNull final TaskRoomDatabase database,
+                         @NonNull final TaskWriteExecutor writeExecutor) {
+        writeExecutor.submit(new TaskWriteExecutor.Write<Boolean>() {
+            @Override
+            public Boolean run(@NonNull TaskDao dao) {
+                return runChunk(database.getOpenHelper().getWritableDatabase());
+            }
+        }, new TaskWriteExecutor.Callback<Boolean>() {
+            @Override
+            public void onComplete(@Nullable Boolean pending) {
+                if (pending != null && pending) {
+                    schedule(database, writeExecutor);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs one chunk of the first pending backfill. Must run in a transaction.
+     *
+     * @return Whether there is more to do.
+     */
+    static boolean runChunk(@NonNull SupportSQLiteDatabase db) {
+        String name;
+        long nextId;
+        long endId;
+        if (!hasBackfillTable(db)) {
+            return false;
+        }
+        try (Cursor cursor = db.query("SELECT `name`, `next_id`, `end_id` FROM `task_backfill` "
+                + "ORDER BY `name` LIMIT 1")) {
+            if (!cursor.moveToFirst()) {
+                db.execSQL("DROP TABLE `task_backfill`");
+                return false;
+            }
+            name = cursor.getString(0);
+            nextId = cursor.getLong(1);
+            endId = cursor.getLong(2);
+        }
+
+        // The last id of this chunk.
+        long lastId = endId;
+        try (Cursor cursor = db.query("SELECT `id` FROM `task_table` WHERE `id` BETWEEN ? AND ? "
+                + "ORDER BY `id` LIMIT 1 OFFSET " + (CHUNK_SIZE - 1), new Object[]{nextId, endId})) {
+            if (cursor.moveToFirst()) {
+                lastId = cursor.getLong(0);
+            }
+        }
+
+        if (nextId <= endId) {
+            if (CONTENT_HASH.equals(name)) {
+                fillContentHashes(db, nextId, lastId);
+            } else if (FTS.equals(name)) {
+                db.execSQL("INSERT INTO `task_fts` (`docid`, `task`, `details`) "
+                        + "SELECT `id`, `task`, `details` FROM `task_table` "
+                        + "WHERE `id` BETWEEN ? AND ?", new Object[]{nextId, lastId});
+            } else if (UUID.equals(name)) {
+                // Random ids, the tasks are then uploaded by the sync.
+                long hlc = HybridLogicalClock.fromMillis(System.currentTimeMillis());
+                db.execSQL("UPDATE `task_table` SET `uuid` = lower(hex(randomblob(16))), "
+                        + "`dirty` = 1, `updated_at` = ?1, `task_hlc` = ?1, `details_hlc` = ?1, "
+                        + "`date_hlc` = ?1, `completed_hlc` = ?1 "
+                        + "WHERE `id` BETWEEN ?2 AND ?3 AND `uuid` IS NULL",
+                        new Object[]{hlc, nextId, lastId});
+            }
+        }
+
+        if (lastId >= endId) {
+            db.execSQL("DELETE FROM `task_backfill` WHERE `name` = ?", new Object[]{name});
+            if (FTS.equals(name)) {
+                // Every row is indexed, back to the triggers Room creates.
+                dropFtsTriggers(db, GUARDED_TRIGGER_PREFIX);
+                createFtsTriggers(db, ROOM_TRIGGER_PREFIX, false);
+            }
+        } else {
+            db.execSQL("UPDATE `task_backfill` SET `next_id` = ? WHERE `name` = ?",
+                    new Object[]{lastId + 1, name});
+        }
+        return true;
+    }
+
+    private static void fillContentHashes(SupportSQLiteDatabase db, long firstId, long lastId) {
+        try (SupportSQLiteStatement update = db.compileStatement(
+                "UPDATE `task_table` SET `content_hash` = ? WHERE `id` = ?");
+             Cursor cursor = db.query("SELECT `id`, `task`, `details`, `date` FROM `task_table` "
+                     + "WHERE `id` BETWEEN ? AND ? AND `content_hash` = 0",
+                     new Object[]{firstId, lastId})) {
+            while (cursor.moveToNext()) {
+                Date date = cursor.isNull(3) ? null : new Date(cursor.getLong(3));
+                update.bindLong(1, Task.computeContentHash(cursor.getString(1),
+                        cursor.getString(2), date));
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        }
+    }
+
+    /**
+     * Replaces the triggers that keep task_fts in sync with task_table by guarded
+     * ones, while the index is being filled. They skip the rows the backfill has
+     * not reached yet: it indexes their latest text. The guarded triggers have
+     * names of their own, the upgrades of Room drop and recreate only its own.
+     */
+    static void guardFtsTriggers(@NonNull SupportSQLiteDatabase db) {
+        dropFtsTriggers(db, ROOM_TRIGGER_PREFIX);
+        createFtsTriggers(db, GUARDED_TRIGGER_PREFIX, true);
+    }
+
+    private static void dropFtsTriggers(SupportSQLiteDatabase db, String prefix) {
+        for (String trigger : TRIGGERS) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + prefix + trigger);
+        }
+    }
+
+    /**
+     * Creates the triggers that keep task_fts in sync with task_table,
+     * as Room creates them.
+     *
+     * @param guarded Whether to skip the rows left to the backfill.
+     */
+    private static void createFtsTriggers(SupportSQLiteDatabase db, String prefix,
+                                          boolean guarded) {
+        String whenOld = guarded ? " WHEN " + indexed("OLD") : "";
+        String whenNew = guarded ? " WHEN " + indexed("NEW") : "";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + prefix + "BEFORE_UPDATE "
+                + "BEFORE UPDATE ON `task_table`" + whenOld + " BEGIN "
+                + "DELETE FROM `task_fts` WHERE `docid`=OLD.`rowid`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + prefix + "BEFORE_DELETE "
+                + "BEFORE DELETE ON `task_table`" + whenOld + " BEGIN "
+                + "DELETE FROM `task_fts` WHERE `docid`=OLD.`rowid`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + prefix + "AFTER_UPDATE "
+                + "AFTER UPDATE ON `task_table`" + whenNew + " BEGIN "
+                + "INSERT INTO `task_fts`(`docid`, `task`, `details`) "
+                + "VALUES (NEW.`rowid`, NEW.`task`, NEW.`details`); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + prefix + "AFTER_INSERT "
+                + "AFTER INSERT ON `task_table`" + whenNew + " BEGIN "
+                + "INSERT INTO `task_fts`(`docid`, `task`, `details`) "
+                + "VALUES (NEW.`rowid`, NEW.`task`, NEW.`details`); END");
+    }
+
+    private static boolean hasBackfillTable(SupportSQLiteDatabase db) {
+        try (Cursor tables = db.query("SELECT 1 FROM sqlite_master "
+                + "WHERE type = 'table' AND name = 'task_backfill'")) {
+            return tables.moveToFirst();
+        }
+    }
+
+    private static boolean isPending(SupportSQLiteDatabase db, String name) {
+        if (!hasBackfillTable(db)) {
+            return false;
+        }
+        try (Cursor cursor = db.query("SELECT 1 FROM `task_backfill` WHERE `name` = ?",
+                new Object[]{name})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    private static String indexed(String row) {
+        return "NOT EXISTS (SELECT 1 FROM `task_backfill` WHERE `name` = '" + FTS + "' "
+                + "AND " + row + ".`rowid` BETWEEN `next_id` AND `end_id`)";
+    }
+}
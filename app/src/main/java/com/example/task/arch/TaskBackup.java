@@ -0,0 +1,313 @@
+package com.example.task.arch;
+
+import android.os.CancellationSignal;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Export and import of every task as JSON Lines: a header line, then one task per line.
+ *
+ *     {"format":"task-backup","version":1,"count":2}
+ *     {"uuid":"…","task":"…","details":"…","date":1600000000000,"completed":false,…}
+ *
+ * Both directions stream CHUNK_SIZE tasks at a time, so they use the same
+ * memory whatever the number of tasks. The export reads the table by id
+ * with keyset pages. The import inserts each chunk through the
+ * TaskWriteExecutor, one transaction per chunk, and waits for it before
+ * reading the next.
+ *
+ * A task keeps its uuid and the times of its changes. Importing a backup
+ * twice, or on a device that synced the same tasks, skips the tasks already
+ * there. The imported tasks are marked dirty for the sync.
+ */
+public class TaskBackup {
+
+    static final int CHUNK_SIZE = 500;
+
+    private static final String FORMAT = "task-backup";
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Fields of the header
+    private static final String FIELD_FORMAT = "format";
+    private static final String FIELD_VERSION = "version";
+    private static final String FIELD_COUNT = "count";
+
+    // Fields of a task
+    private static final String FIELD_UUID = "uuid";
+    private static final String FIELD_TASK = "task";
+    private static final String FIELD_DETAILS = "details";
+    private static final String FIELD_DATE = "date";
+    private static final String FIELD_COMPLETED = "completed";
+    private static final String FIELD_COMPLETED_AT = "completed_at";
+    private static final String FIELD_TASK_HLC = "task_hlc";
+    private static final String FIELD_DETAILS_HLC = "details_hlc";
+    private static final String FIELD_DATE_HLC = "date_hlc";
+    private static final String FIELD_COMPLETED_HLC = "completed_hlc";
+    private static final String FIELD_UPDATED_AT = "updated_at";
+
+    /**
+     * Called after each chunk.
+     */
+    public interface Progress {
+        /**
+         * @param done  Number of tasks exported or imported so far.
+         * @param total Number of tasks of the backup.
+         */
+        void onProgress(long done, long total);
+    }
+
+    private final TaskDao mDao;
+    private final TaskWriteExecutor mWriteExecutor;
+    private final HybridLogicalClock mClock;
+
+    public TaskBackup(TaskDao dao, TaskWriteExecutor writeExecutor, HybridLogicalClock clock) {
+        this.mDao = dao;
+        this.mWriteExecutor = writeExecutor;
+        this.mClock = clock;
+    }
+
+    /**
+     * Writes every task to the stream, which is left open.
+     *
+     * @return The number of exported tasks.
+     * @throws android.os.OperationCanceledException If the signal was canceled.
+     */
+    @WorkerThread
+    public long export(@NonNull OutputStream out, @Nullable Progress progress,
+                       @Nullable CancellationSignal signal) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+        // The writer only writes to the buffer, it is never closed.
+        JsonWriter json = new JsonWriter(writer);
+        // Lenient, for the many top-level values of JSON Lines.
+        json.setLenient(true);
+
+        long total = mDao.getTaskCount();
+        json.beginObject()
+                .name(FIELD_FORMAT).value(FORMAT)
+                .name(FIELD_VERSION).value(VERSION)
+                .name(FIELD_COUNT).value(total)
+                .endObject();
+        writer.write('\n');
+
+        long done = 0;
+        int lastId = 0;
+        List<Task> chunk = mDao.getAllTasksAfter(lastId, CHUNK_SIZE);
+        while (!chunk.isEmpty()) {
+            if (signal != null) {
+                signal.throwIfCanceled();
+            }
+            for (Task task : chunk) {
+                writeTask(json, task);
+                writer.write('\n');
+            }
+            done += chunk.size();
+            lastId = chunk.get(chunk.size() - 1).getId();
+            if (progress != null) {
+                progress.onProgress(done, Math.max(done, total));
+            }
+            chunk = mDao.getAllTasksAfter(lastId, CHUNK_SIZE);
+        }
+        writer.flush();
+        return done;
+    }
+
+    /**
+     * Reads the tasks of the stream, which is left open, and inserts them.
+     * The chunks inserted before a failure or a cancellation are kept.
+     *
+     * @return The number of imported tasks, the tasks already there are not counted.
+     * @throws IOException If the stream is not a task backup.
+     * @throws android.os.OperationCanceledException If the signal was canceled.
+     */
+    @WorkerThread
+    public long importTasks(@NonNull InputStream in, @Nullable Progress progress,
+                            @Nullable CancellationSignal signal) throws IOException {
+        JsonReader json = new JsonReader(new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE));
+        json.setLenient(true);
+
+        long total = readHeader(json);
+        long read = 0;
+        long imported = 0;
+        List<Task> chunk = new ArrayList<>(CHUNK_SIZE);
+        while (json.peek() != JsonToken.END_DOCUMENT) {
+            chunk.add(readTask(json));
+            if (chunk.size() == CHUNK_SIZE) {
+                imported += insert(chunk, signal);
+                read += chunk.size();
+                chunk.clear();
+                if (progress != null) {
+                    progress.onProgress(read, Math.max(read, total));
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += insert(chunk, signal);
+            read += chunk.size();
+            if (progress != null) {
+                progress.onProgress(read, read);
+            }
+        }
+        return imported;
+    }
+
+    private int insert(final List<Task> chunk, @Nullable CancellationSignal signal)
+            throws IOException {
+        if (signal != null) {
+            signal.throwIfCanceled();
+        }
+        final long hlc = mClock.now();
+        try {
+            return mWriteExecutor.submit(new TaskWriteExecutor.Write<Integer>() {
+                @Override
+                public Integer run(@NonNull TaskDao dao) {
+                    for (Task task : chunk) {
+                        if (task.getUpdatedAt() == 0) {
+                            // No times in the backup, the import is the change.
+                            task.markChanged(hlc);
+                        }
+                    }
+                    int count = 0;
+                    for (Long id : dao.insert(chunk)) {
+                        if (id != -1) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed inserting the imported tasks.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeTask(JsonWriter json, Task task) throws IOException {
+        json.beginObject();
+        json.name(FIELD_UUID).value(task.getUuid());
+        json.name(FIELD_TASK).value(task.getTask());
+        json.name(FIELD_DETAILS).value(task.getDetails());
+        json.name(FIELD_DATE).value(task.getDate() != null ? task.getDate().getTime() : null);
+        json.name(FIELD_COMPLETED).value(task.isCompleted());
+        json.name(FIELD_COMPLETED_AT).value(task.getCompletedAt() != null
+                ? task.getCompletedAt().getTime() : null);
+        json.name(FIELD_TASK_HLC).value(task.getTaskHlc());
+        json.name(FIELD_DETAILS_HLC).value(task.getDetailsHlc());
+        json.name(FIELD_DATE_HLC).value(task.getDateHlc());
+        json.name(FIELD_COMPLETED_HLC).value(task.getCompletedHlc());
+        json.name(FIELD_UPDATED_AT).value(task.getUpdatedAt());
+        json.endObject();
+    }
+
+    /**
+     * @return The number of tasks announced by the header.
+     */
+    private static long readHeader(JsonReader json) throws IOException {
+        String format = null;
+        int version = 0;
+        long count = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case FIELD_FORMAT:
+                    format = json.nextString();
+                    break;
+                case FIELD_VERSION:
+                    version = json.nextInt();
+                    break;
+                case FIELD_COUNT:
+                    count = json.nextLong();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        if (!FORMAT.equals(format) || version > VERSION) {
+            throw new IOException("Not a task backup, or from a newer version: "
+                    + format + " " + version);
+        }
+        return count;
+    }
+
+    private static Task readTask(JsonReader json) throws IOException {
+        Task task = new Task();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case FIELD_UUID:
+                    task.setUuid(json.nextString());
+                    break;
+                case FIELD_TASK:
+                    task.setTask(json.nextString());
+                    break;
+                case FIELD_DETAILS:
+                    task.setDetails(json.nextString());
+                    break;
+                case FIELD_DATE:
+                    task.setDate(new Date(json.nextLong()));
+                    break;
+                case FIELD_COMPLETED:
+                    task.setCompleted(json.nextBoolean());
+                    break;
+                case FIELD_COMPLETED_AT:
+                    task.setCompletedAt(new Date(json.nextLong()));
+                    break;
+                case FIELD_TASK_HLC:
+                    task.setTaskHlc(json.nextLong());
+                    break;
+                case FIELD_DETAILS_HLC:
+                    task.setDetailsHlc(json.nextLong());
+                    break;
+                case FIELD_DATE_HLC:
+                    task.setDateHlc(json.nextLong());
+                    break;
+                case FIELD_COMPLETED_HLC:
+                    task.setCompletedHlc(json.nextLong());
+                    break;
+                case FIELD_UPDATED_AT:
+                    task.setUpdatedAt(json.nextLong());
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        if (task.getUuid() == null) {
+            task.setUuid(UUID.randomUUID().toString());
+        }
+        task.setContentHash(Task.computeContentHash(task.getTask(), task.getDetails(),
+                task.getDate()));
+        task.setDirty(true);
+        return task;
+    }
+}
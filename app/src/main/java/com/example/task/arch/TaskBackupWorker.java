@@ -0,0 +1,177 @@
+package com.example.task.arch;
+
+import android.app.Application;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.Data;
+import androidx.work.ForegroundInfo;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.task.R;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Runs a TaskBackup export or import of a document in the background.
+ *
+ * The progress is published as PROGRESS_DONE and PROGRESS_TOTAL, the number
+ * of tasks as OUTPUT_COUNT. Cancelling the work stops it after the current chunk.
+ *
+ * The work runs in the foreground with a notification of its progress: a
+ * backup of many tasks can take longer than the ten minutes WorkManager
+ * gives a background worker.
+ */
+public class TaskBackupWorker extends Worker {
+
+    private static final String TAG = "TaskBackupWorker";
+
+    private static final String KEY_URI = "uri";
+    private static final String KEY_EXPORT = "export";
+
+    private static final String CHANNEL_ID = "task_backup";
+    private static final int NOTIFICATION_ID = 1;
+
+    public static final String PROGRESS_DONE = "done";
+    public static final String PROGRESS_TOTAL = "total";
+    public static final String OUTPUT_COUNT = "count";
+
+    private final CancellationSignal mSignal = new CancellationSignal();
+
+    public TaskBackupWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Starts an export of every task to the document, or an import of its tasks.
+     *
+     * @return The id of the work, to follow its progress.
+     */
+    public static UUID start(@NonNull Context context, @NonNull Uri uri, boolean export) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(TaskBackupWorker.class)
+                .setInputData(new Data.Builder()
+                        .putString(KEY_URI, uri.toString())
+                        .putBoolean(KEY_EXPORT, export)
+                        .build())
+                .build();
+        WorkManager.getInstance(context).enqueue(request);
+        return request.getId();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Application application = (Application) getApplicationContext();
+        TaskRepository repository = TaskRepository.getRepository(application);
+        TaskBackup backup = new TaskBackup(TaskRoomDatabase.getDatabase(application).taskDao(),
+                repository.getWriteExecutor(), repository.getClock());
+        Uri uri = Uri.parse(getInputData().getString(KEY_URI));
+        final boolean export = getInputData().getBoolean(KEY_EXPORT, true);
+        setForegroundAsync(newForegroundInfo(export, 0, 0));
+        TaskBackup.Progress progress = new TaskBackup.Progress() {
+            private int mPercent;
+
+            @Override
+            public void onProgress(long done, long total) {
+                setProgressAsync(new Data.Builder()
+                        .putLong(PROGRESS_DONE, done)
+                        .putLong(PROGRESS_TOTAL, total)
+                        .build());
+                // The notification only changes with the percentage.
+                int percent = total > 0 ? (int) (done * 100 / total) : 0;
+                if (percent != mPercent) {
+                    mPercent = percent;
+                    setForegroundAsync(newForegroundInfo(export, percent, 100));
+                }
+            }
+        };
+
+        ContentResolver resolver = application.getContentResolver();
+        long count;
+        try {
+            if (export) {
+                try (OutputStream out = openOutput(resolver, uri)) {
+                    count = backup.export(out, progress, mSignal);
+                }
+            } else {
+                try (InputStream in = openInput(resolver, uri)) {
+                    count = backup.importTasks(in, progress, mSignal);
+                }
+            }
+        } catch (OperationCanceledException e) {
+            Log.i(TAG, "Backup canceled.");
+            return Result.failure();
+        } catch (IOException e) {
+            Log.e(TAG, "Backup of " + uri + " failed.", e);
+            return Result.failure();
+        }
+        return Result.success(new Data.Builder().putLong(OUTPUT_COUNT, count).build());
+    }
+
+    private ForegroundInfo newForegroundInfo(boolean export, int progress, int max) {
+        Context context = getApplicationContext();
+        createChannel(context);
+        String title = context.getString(export ? R.string.exporting : R.string.importing,
+                progress);
+        Notification notification = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_round_save_24)
+                .setContentTitle(title)
+                .setProgress(max, progress, max == 0)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .addAction(R.drawable.ic_round_close_24, context.getString(R.string.cancel),
+                        WorkManager.getInstance(context).createCancelPendingIntent(getId()))
+                .build();
+        return new ForegroundInfo(NOTIFICATION_ID, notification);
+    }
+
+    private static void createChannel(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    context.getString(R.string.backups), NotificationManager.IMPORTANCE_LOW);
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        mSignal.cancel();
+    }
+
+    private static OutputStream openOutput(ContentResolver resolver, Uri uri)
+            throws FileNotFoundException {
+        // Truncate, the document may hold an older backup.
+        OutputStream out = resolver.openOutputStream(uri, "wt");
+        if (out == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        return out;
+    }
+
+    private static InputStream openInput(ContentResolver resolver, Uri uri)
+            throws FileNotFoundException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        return in;
+    }
+}
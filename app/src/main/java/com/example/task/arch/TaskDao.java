@@ -1,39 +1,388 @@
 package com.example.task.arch;
 
-import androidx.lifecycle.LiveData;
+import androidx.annotation.Nullable;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Data Access Object (DAO) for a task.
  * Each method performs a database operation,
  * such as inserting or deleting a task,
  * running a DB query, or deleting all tasks.
+ *
+ * The list variants write all the tasks in one transaction.
+ * Queries taking a list of ids are run in chunks of MAX_BIND_PARAMETERS,
+ * the number of parameters a statement can bind on older versions of SQLite.
  */
 @Dao
-public interface TaskDao {
+public abstract class TaskDao {
+
+    static final int MAX_BIND_PARAMETERS = 999;
+
+    // Number of matches of a search that are ranked at most.
+    static final int SEARCH_CANDIDATES = 1000;
+
+    // The columns of a TaskListItem.
+    static final String LIST_ITEM_COLUMNS = "id, task, date, content_hash, " +
+            "CASE WHEN length(details) > " + TaskListItem.PREVIEW_LENGTH + " " +
+            "THEN substr(details, 1, " + TaskListItem.PREVIEW_LENGTH + ") || '\u2026' " +
+            "ELSE details END AS preview";
 
     @Insert(onConflict = OnConflictStrategy.IGNORE)
-    void insert(Task task);
+    public abstract long insert(Task task);
+
+    /**
+     * Inserts the tasks in one transaction.
+     *
+     * @return The row ids of the new tasks, -1 for a task that was ignored.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract List<Long> insert(List<Task> tasks);
 
     @Update
-    void update(Task task);
+    public abstract int update(Task task);
+
+    /**
+     * Updates the task, details and date of a task and marks it changed,
+     * the other columns are left as they are. Only the fields whose value
+     * changed get the time of the change.
+     *
+     * @param hlc The HybridLogicalClock time of the change.
+     * @return The number of updated rows.
+     */
+    public int updateContent(Task task, long hlc) {
+        Long date = task.getDate() != null ? task.getDate().getTime() : null;
+        return updateContent(task.getId(), task.getTask(), task.getDetails(), date,
+                Task.computeContentHash(task.getTask(), task.getDetails(), task.getDate()),
+                hlc);
+    }
 
+    /**
+     * Updates the tasks in one transaction.
+     *
+     * @return The number of updated rows.
+     */
+    @Update
+    public abstract int update(List<Task> tasks);
+
+    @Delete
+    public abstract int delete(Task task);
+
+    /**
+     * Deletes the tasks in one transaction.
+     *
+     * @return The number of deleted rows.
+     */
     @Delete
-    void delete(Task task);
+    public abstract int delete(List<Task> tasks);
 
     @Query("DELETE FROM task_table")
-    void deleteAll();
+    public abstract int deleteAll();
+
+    /**
+     * Deletes the tasks with the given ids, however many.
+     *
+     * @return The number of deleted rows.
+     */
+    @Transaction
+    public int deleteByIds(List<Integer> ids) {
+        int count = 0;
+        for (List<Integer> chunk : chunks(ids)) {
+            count += deleteByIdsChunk(chunk);
+        }
+        return count;
+    }
+
+    /**
+     * Loads the tasks with the given ids, however many, in no particular order.
+     */
+    @Transaction
+    public List<Task> getTasks(List<Integer> ids) {
+        List<Task> tasks = new ArrayList<>(ids.size());
+        for (List<Integer> chunk : chunks(ids)) {
+            tasks.addAll(getTasksChunk(chunk));
+        }
+        return tasks;
+    }
+
+    /**
+     * Marks the tasks with the given ids completed, or not completed, however many.
+     *
+     * @param completedAt The time of completion in milliseconds, null when not completed.
+     * @param hlc         The HybridLogicalClock time of the change.
+     * @return The number of updated rows.
+     */
+    @Transaction
+    public int setCompleted(List<Integer> ids, boolean completed, @Nullable Long completedAt,
+                            long hlc) {
+        int count = 0;
+        // Room binds :hlc once per use, so each chunk has four more parameters.
+        for (List<Integer> chunk : chunks(ids, MAX_BIND_PARAMETERS - 4)) {
+            count += setCompletedChunk(chunk, completed, completedAt, hlc);
+        }
+        return count;
+    }
+
+    /**
+     * Deletes at most limit of the tasks completed before the given time.
+     *
+     * @return The number of deleted rows.
+     */
+    @Query("DELETE FROM task_table WHERE id IN (SELECT id FROM task_table " +
+            "WHERE completed = 1 AND completed_at < :before LIMIT :limit)")
+    public abstract int purgeCompleted(long before, int limit);
+
+    @Query("DELETE FROM task_table WHERE id IN (:ids)")
+    abstract int deleteByIdsChunk(List<Integer> ids);
+
+    // A stored time ahead of the clock is moved past, the times of a row only increase.
+    @Query("UPDATE task_table SET completed = :completed, completed_at = :completedAt, " +
+            "completed_hlc = MAX(completed_hlc + 1, :hlc), " +
+            "updated_at = MAX(updated_at + 1, :hlc), dirty = 1 WHERE id IN (:ids)")
+    abstract int setCompletedChunk(List<Integer> ids, boolean completed, Long completedAt,
+                                   long hlc);
+
+    // The expressions of an UPDATE see the row before it, the CASEs compare the old values.
+    @Query("UPDATE task_table SET " +
+            "task_hlc = CASE WHEN task IS :task THEN task_hlc " +
+            "ELSE MAX(task_hlc + 1, :hlc) END, " +
+            "details_hlc = CASE WHEN details IS :details THEN details_hlc " +
+            "ELSE MAX(details_hlc + 1, :hlc) END, " +
+            "date_hlc = CASE WHEN date IS :date THEN date_hlc " +
+            "ELSE MAX(date_hlc + 1, :hlc) END, " +
+            "task = :task, details = :details, date = :date, content_hash = :contentHash, " +
+            "updated_at = MAX(updated_at + 1, :hlc), dirty = 1 WHERE id = :id")
+    abstract int updateContent(int id, String task, String details, Long date, int contentHash,
+                               long hlc);
+
+    @Query("SELECT * from task_table WHERE id IN (:ids)")
+    abstract List<Task> getTasksChunk(List<Integer> ids);
+
+    static <T> List<List<T>> chunks(List<T> items) {
+        return chunks(items, MAX_BIND_PARAMETERS);
+    }
+
+    /**
+     * Splits the items in views of at most size items each.
+     */
+    static <T> List<List<T>> chunks(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += size) {
+            chunks.add(items.subList(start, Math.min(items.size(), start + size)));
+        }
+        return chunks;
+    }
 
     @Query("SELECT * from task_table LIMIT 1")
-    Task[] getAnyTask();
+    public abstract Task[] getAnyTask();
+
+    /**
+     * The latest HybridLogicalClock time stored by a task or a tombstone, 0 if there is none.
+     */
+    @Query("SELECT IFNULL(MAX(hlc), 0) FROM (" +
+            "SELECT MAX(MAX(updated_at, task_hlc, details_hlc, date_hlc, completed_hlc)) AS hlc " +
+            "FROM task_table UNION ALL SELECT MAX(deleted_at) FROM task_tombstone)")
+    public abstract long getLatestHlc();
+
+    @Query("SELECT COUNT(*) from task_table")
+    public abstract int getTaskCount();
+
+    /**
+     * Every task, completed or not, by id. Used to read the whole table page by page.
+     */
+    @Query("SELECT * from task_table WHERE id > :id ORDER BY id ASC LIMIT :limit")
+    public abstract List<Task> getAllTasksAfter(int id, int limit);
+
+    /**
+     * The task with the given id, null if there is none.
+     */
+    @Nullable
+    @Query("SELECT * from task_table WHERE id = :id")
+    public abstract Task getTask(int id);
+
+    // List queries. A row only reads a preview of the details, which can be long.
+
+    /**
+     * The first rows of the list, the tasks not completed ordered by date.
+     */
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " from task_table WHERE completed = 0 " +
+            "ORDER BY date ASC, id ASC LIMIT :limit")
+    public abstract List<TaskListItem> getFirstListItems(int limit);
+
+    @Query("SELECT * from task_table WHERE completed = 0 ORDER BY date ASC, id ASC LIMIT :limit")
+    public abstract List<Task> getFirstTasks(int limit);
+
+    // Keyset queries of the list rows, over the tasks not completed. Each page
+    // starts from the (date, id) of the last row of the previous page, so a page
+    // is read with an index seek whatever its position.
+    // Tasks without a date come first, NULL dates are handled by separate queries
+    // because a comparison with NULL never matches.
+
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " from task_table " +
+            "WHERE completed = 0 AND date IS NOT NULL ORDER BY date ASC, id ASC LIMIT :limit")
+    public abstract List<TaskListItem> getFirstDatedListItems(int limit);
+
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " from task_table " +
+            "WHERE completed = 0 AND date IS NULL AND id > :id " +
+            "ORDER BY date ASC, id ASC LIMIT :limit")
+    public abstract List<TaskListItem> getUndatedListItemsAfter(int id, int limit);
+
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " from task_table WHERE completed = 0 " +
+            "AND date >= :date AND (date > :date OR id > :id) " +
+            "ORDER BY date ASC, id ASC LIMIT :limit")
+    public abstract List<TaskListItem> getListItemsAfter(long date, int id, int limit);
+
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " from task_table " +
+            "WHERE completed = 0 AND date IS NULL AND id < :id " +
+            "ORDER BY date DESC, id DESC LIMIT :limit")
+    public abstract List<TaskListItem> getUndatedListItemsBefore(int id, int limit);
+
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " from task_table WHERE completed = 0 " +
+            "AND date <= :date AND (date < :date OR id < :id) " +
+            "ORDER BY date DESC, id DESC LIMIT :limit")
+    public abstract List<TaskListItem> getListItemsBefore(long date, int id, int limit);
+
+    // Reminder and widget queries, each a seek in the (completed, date, id) index.
+
+    /**
+     * The first due date after the given time, of the tasks not completed.
+     */
+    @Nullable
+    @Query("SELECT MIN(date) from task_table WHERE completed = 0 AND date > :after")
+    public abstract Long getNextDueDate(long after);
+
+    @Query("SELECT * from task_table WHERE completed = 0 AND date > :after AND date <= :until " +
+            "ORDER BY date ASC, id ASC LIMIT :limit")
+    public abstract List<Task> getTasksDue(long after, long until, int limit);
+
+    /**
+     * The first dated tasks not completed, overdue ones first, for the widget.
+     */
+    @Query("SELECT id, task, date from task_table WHERE completed = 0 AND date IS NOT NULL " +
+            "ORDER BY date ASC, id ASC LIMIT :limit")
+    public abstract List<TaskSummary> getDueSummaries(int limit);
+
+    // Sync queries. The dirty tasks and the tombstones are the local changes
+    // not uploaded yet, a task without uuid waits for TaskBackfill.
+
+    @Query("SELECT * from task_table WHERE dirty = 1 AND uuid IS NOT NULL LIMIT :limit")
+    public abstract List<Task> getDirtyTasks(int limit);
+
+    @Query("SELECT * from task_tombstone LIMIT :limit")
+    public abstract List<TaskTombstone> getTombstones(int limit);
+
+    @Query("SELECT EXISTS(SELECT 1 from task_table WHERE dirty = 1 AND uuid IS NOT NULL) " +
+            "OR EXISTS(SELECT 1 from task_tombstone)")
+    public abstract boolean hasLocalChanges();
+
+    /**
+     * Clears the dirty flag of an uploaded task, unless it changed again meanwhile.
+     */
+    @Query("UPDATE task_table SET dirty = 0 WHERE id = :id AND updated_at = :updatedAt")
+    public abstract int markSynced(int id, long updatedAt);
+
+    @Query("DELETE FROM task_tombstone WHERE uuid IN (:uuids)")
+    public abstract int deleteTombstones(List<String> uuids);
+
+    @Query("DELETE FROM task_tombstone")
+    public abstract int deleteAllTombstones();
+
+    @Query("SELECT * from task_table WHERE uuid = :uuid")
+    public abstract Task getTaskByUuid(String uuid);
+
+    /**
+     * Loads the tasks with the given uuids, however many, in no particular order.
+     */
+    @Transaction
+    public List<Task> getTasksByUuids(List<String> uuids) {
+        List<Task> tasks = new ArrayList<>(uuids.size());
+        for (List<String> chunk : chunks(uuids)) {
+            tasks.addAll(getTasksByUuidsChunk(chunk));
+        }
+        return tasks;
+    }
+
+    @Query("SELECT * from task_table WHERE uuid IN (:uuids)")
+    abstract List<Task> getTasksByUuidsChunk(List<String> uuids);
+
+    /**
+     * Deletes a task deleted on another device, without recording a tombstone.
+     */
+    @Transaction
+    public int deleteSynced(Task task) {
+        int count = delete(task);
+        deleteTombstones(Collections.singletonList(task.getUuid()));
+        return count;
+    }
+
+    /**
+     * Full-text search of the task and details through the task_fts index,
+     * best matches first.
+     *
+     * SQLite has no ranking function for FTS4, so the matches are first read
+     * as their id and matchinfo only, ranked, and the tasks and snippets of the
+     * best ones read. At most SEARCH_CANDIDATES matches are ranked, the most
+     * recent tasks: a short prefix matching most of the tasks costs no more
+     * than that.
+     *
+     * @param query An FTS4 MATCH expression.
+     * @param limit The maximum number of results.
+     */
+    @Transaction
+    public List<TaskSearchResult> search(String query, int limit) {
+        List<TaskSearchResult.Match> matches =
+                getSearchMatches(query, Math.max(limit, SEARCH_CANDIDATES));
+        for (TaskSearchResult.Match match : matches) {
+            match.rank = TaskSearchResult.computeRank(match.matchInfo);
+        }
+        Collections.sort(matches, new Comparator<TaskSearchResult.Match>() {
+            @Override
+            public int compare(TaskSearchResult.Match a, TaskSearchResult.Match b) {
+                return Double.compare(b.rank, a.rank);
+            }
+        });
+        Map<Integer, Double> ranks = new HashMap<>();
+        for (TaskSearchResult.Match match : matches.subList(0, Math.min(limit, matches.size()))) {
+            ranks.put(match.id, match.rank);
+        }
+        List<TaskSearchResult> results = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>(ranks.keySet());
+        for (List<Integer> chunk : chunks(ids, MAX_BIND_PARAMETERS - 1)) {
+            results.addAll(getSearchResults(query, chunk));
+        }
+        for (TaskSearchResult result : results) {
+            result.rank = ranks.get(result.task.getId());
+        }
+        Collections.sort(results, new Comparator<TaskSearchResult>() {
+            @Override
+            public int compare(TaskSearchResult a, TaskSearchResult b) {
+                return Double.compare(b.rank, a.rank);
+            }
+        });
+        return results;
+    }
+
+    @Query("SELECT task_fts.rowid AS id, matchinfo(task_fts, 'pcx') AS match_info " +
+            "FROM task_fts JOIN task_table ON task_table.id = task_fts.rowid " +
+            "WHERE task_fts MATCH :query AND task_table.completed = 0 " +
+            "ORDER BY task_fts.rowid DESC LIMIT :limit")
+    abstract List<TaskSearchResult.Match> getSearchMatches(String query, int limit);
 
-    @Query("SELECT * from task_table ORDER BY date ASC")
-    LiveData<List<Task>> getAllTasks();
+    @Query("SELECT task_table.*, " +
+            "snippet(task_fts, '<b>', '</b>', '...', -1, 10) AS snippet " +
+            "FROM task_fts JOIN task_table ON task_table.id = task_fts.rowid " +
+            "WHERE task_fts MATCH :query AND task_table.id IN (:ids)")
+    abstract List<TaskSearchResult> getSearchResults(String query, List<Integer> ids);
 }
@@ -0,0 +1,81 @@
+package com.example.task.arch;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import java.util.Date;
+
+/**
+ * The form of the editor as autosaved while the user types, before the task is saved.
+ *
+ * There is at most one draft per task, and one for a new task: a newer
+ * draft of the same task replaces the previous one.
+ */
+@Entity(tableName = "draft_table")
+public class TaskDraft {
+
+    // Key of the draft of a new task, no task has this id.
+    public static final int NEW_TASK_ID = 0;
+
+    // Id of the edited task, or NEW_TASK_ID.
+    @PrimaryKey
+    @ColumnInfo(name = "task_id")
+    private int mTaskId;
+
+    @ColumnInfo(name = "task")
+    private String mTask;
+
+    @ColumnInfo(name = "details")
+    private String mDetails;
+
+    // The date of the form in milliseconds, 0 for none.
+    @ColumnInfo(name = "date")
+    private long mDate;
+
+    // Time of the last autosave, in milliseconds.
+    @ColumnInfo(name = "updated_at")
+    private long mUpdatedAt;
+
+    public TaskDraft(int mTaskId, String mTask, String mDetails, long mDate, long mUpdatedAt) {
+        this.mTaskId = mTaskId;
+        this.mTask = mTask;
+        this.mDetails = mDetails;
+        this.mDate = mDate;
+        this.mUpdatedAt = mUpdatedAt;
+    }
+
+    public int getTaskId() {
+        return mTaskId;
+    }
+
+    public String getTask() {
+        return mTask;
+    }
+
+    public String getDetails() {
+        return mDetails;
+    }
+
+    public long getDate() {
+        return mDate;
+    }
+
+    public long getUpdatedAt() {
+        return mUpdatedAt;
+    }
+
+    /**
+     * Whether the form is empty, such a draft is not kept.
+     */
+    public boolean isEmpty() {
+        return (mTask == null || mTask.isEmpty()) && (mDetails == null || mDetails.isEmpty());
+    }
+
+    /**
+     * The draft as a task, with the id of the edited task.
+     */
+    public Task toTask() {
+        return new Task(mTaskId, mTask, mDetails, mDate != 0 ? new Date(mDate) : null);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.task.arch;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/**
+ * Full-text index of the task and details of every task.
+ * It stores no text of its own, Room keeps it in sync with
+ * task_table through triggers.
+ */
+@Fts4(contentEntity = Task.class)
+@Entity(tableName = "task_fts")
+public class TaskFts {
+
+    @ColumnInfo(name = "task")
+    private String mTask;
+
+    @ColumnInfo(name = "details")
+    private String mDetails;
+
+    public TaskFts(String mTask, String mDetails) {
+        this.mTask = mTask;
+        this.mDetails = mDetails;
+    }
+
+    public String getTask() {
+        return mTask;
+    }
+
+    public String getDetails() {
+        return mDetails;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.task.arch;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.DataSource;
+import androidx.paging.ItemKeyedDataSource;
+import androidx.room.InvalidationTracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keyset pagination over the task list.
+ *
+ * The list is ordered by (date, id) and tasks without a date come first.
+ * A page is found by seeking the index to the key of its neighbour,
+ * so loading any page costs the size of the page, not its position.
+ */
+class TaskKeyset {
+
+    private TaskKeyset() {
+        // Static helpers only.
+    }
+
+    static List<TaskListItem> after(@NonNull TaskDao dao, @Nullable TaskListItem anchor,
+                                    int count) {
+        if (anchor == null) {
+            return dao.getFirstListItems(count);
+        }
+        if (anchor.date != null) {
+            return dao.getListItemsAfter(anchor.date.getTime(), anchor.id, count);
+        }
+        // The undated tasks are followed by the first dated ones.
+        List<TaskListItem> items = new ArrayList<>(dao.getUndatedListItemsAfter(anchor.id, count));
+        if (items.size() < count) {
+            items.addAll(dao.getFirstDatedListItems(count - items.size()));
+        }
+        return items;
+    }
+
+    static List<TaskListItem> before(@NonNull TaskDao dao, @NonNull TaskListItem anchor,
+                                     int count) {
+        if (anchor.date == null) {
+            return dao.getUndatedListItemsBefore(anchor.id, count);
+        }
+        // The dated tasks are preceded by the last undated ones.
+        List<TaskListItem> items = new ArrayList<>(
+                dao.getListItemsBefore(anchor.date.getTime(), anchor.id, count));
+        if (items.size() < count) {
+            items.addAll(dao.getUndatedListItemsBefore(Integer.MAX_VALUE, count - items.size()));
+        }
+        return items;
+    }
+
+    /**
+     * Creates the data sources of the list, a new one after each change of task_table.
+     */
+    static class Factory extends DataSource.Factory<TaskListItem, TaskListItem> {
+
+        private final TaskRoomDatabase mDatabase;
+
+        Factory(TaskRoomDatabase database) {
+            this.mDatabase = database;
+        }
+
+        @NonNull
+        @Override
+        public DataSource<TaskListItem, TaskListItem> create() {
+            return new KeysetDataSource(mDatabase);
+        }
+    }
+
+    /**
+     * Loads the rows of the list page by page, each row being the key of its neighbours.
+     * It is invalidated by the next change of task_table, and the list reloaded around
+     * the last row it showed.
+     */
+    static class KeysetDataSource extends ItemKeyedDataSource<TaskListItem, TaskListItem> {
+
+        private final TaskRoomDatabase mDatabase;
+        private final TaskDao mDao;
+        private final InvalidationTracker.Observer mObserver =
+                new InvalidationTracker.Observer("task_table") {
+                    @Override
+                    public void onInvalidated(@NonNull Set<String> tables) {
+                        invalidate();
+                    }
+                };
+
+        KeysetDataSource(TaskRoomDatabase database) {
+            this.mDatabase = database;
+            this.mDao = database.taskDao();
+            database.getInvalidationTracker().addObserver(mObserver);
+            addInvalidatedCallback(new InvalidatedCallback() {
+                @Override
+                public void onInvalidated() {
+                    mDatabase.getInvalidationTracker().removeObserver(mObserver);
+                }
+            });
+        }
+
+        @Override
+        public void loadInitial(@NonNull LoadInitialParams<TaskListItem> params,
+                                @NonNull LoadInitialCallback<TaskListItem> callback) {
+            TaskListItem key = params.requestedInitialKey;
+            if (key == null) {
+                callback.onResult(after(mDao, null, params.requestedLoadSize));
+                return;
+            }
+            // Half a load before the key, the row of the key if it is still listed, then after.
+            List<TaskListItem> items = new ArrayList<>(
+                    before(mDao, key, params.requestedLoadSize / 2));
+            Collections.reverse(items);
+            TaskListItem anchor = items.isEmpty() ? null : items.get(items.size() - 1);
+            items.addAll(after(mDao, anchor, params.requestedLoadSize - items.size()));
+            callback.onResult(items);
+        }
+
+        @Override
+        public void loadAfter(@NonNull LoadParams<TaskListItem> params,
+                              @NonNull LoadCallback<TaskListItem> callback) {
+            callback.onResult(after(mDao, params.key, params.requestedLoadSize));
+        }
+
+        @Override
+        public void loadBefore(@NonNull LoadParams<TaskListItem> params,
+                               @NonNull LoadCallback<TaskListItem> callback) {
+            // Read nearest first, listed in the order of the list.
+            List<TaskListItem> items = new ArrayList<>(
+                    before(mDao, params.key, params.requestedLoadSize));
+            Collections.reverse(items);
+            callback.onResult(items);
+        }
+
+        @NonNull
+        @Override
+        public TaskListItem getKey(@NonNull TaskListItem item) {
+            return item;
+        }
+    }
+}
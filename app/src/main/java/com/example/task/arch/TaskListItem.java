@@ -0,0 +1,64 @@
+package com.example.task.arch;
+
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Ignore;
+import androidx.room.TypeConverters;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * The columns of a task shown by a row of the list. The details are read
+ * as a preview of at most PREVIEW_LENGTH characters, the full task is
+ * only loaded to edit it.
+ */
+public class TaskListItem {
+
+    // Characters of the details kept by the preview, more than a row shows.
+    public static final int PREVIEW_LENGTH = 200;
+
+    @ColumnInfo(name = "id")
+    public int id;
+
+    @ColumnInfo(name = "task")
+    public String task;
+
+    // The start of the details, ending with an ellipsis when they are longer.
+    @ColumnInfo(name = "preview")
+    public String preview;
+
+    @Nullable
+    @TypeConverters(DateConverter.class)
+    @ColumnInfo(name = "date")
+    public Date date;
+
+    // The hash of the whole task, details included, see Task.computeContentHash.
+    @ColumnInfo(name = "content_hash")
+    public int contentHash;
+
+    public TaskListItem() {
+    }
+
+    @Ignore
+    public TaskListItem(int id, String task, String preview, @Nullable Date date,
+                        int contentHash) {
+        this.id = id;
+        this.task = task;
+        this.preview = preview;
+        this.date = date;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Whether the other item has the same content. Most changed rows differ by
+     * their hash, without comparing the text. The same hash is confirmed by
+     * comparing what the row shows.
+     */
+    public boolean hasSameContent(TaskListItem other) {
+        return contentHash == other.contentHash
+                && Objects.equals(task, other.task)
+                && Objects.equals(preview, other.preview)
+                && Objects.equals(date, other.date);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.task.arch;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Migrations of the task database, from version 1 on.
+ *
+ * A migration only changes the schema. Filling new columns or tables for the
+ * existing rows is left to TaskBackfill, which does it in small transactions
+ * after the database is open, so an upgrade of a large database is quick.
+ */
+public class TaskMigrations {
+
+    private TaskMigrations() {
+        // Constants only.
+    }
+
+    /**
+     * Adds the (date, id) index of the list order.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_task_table_date_id` "
+                    + "ON `task_table` (`date`, `id`)");
+        }
+    };
+
+    /**
+     * Adds the content hash. Existing rows keep 0 until TaskBackfill computes it.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `task_table` ADD COLUMN `content_hash` INTEGER NOT NULL DEFAULT 0");
+            TaskBackfill.start(db, TaskBackfill.CONTENT_HASH);
+        }
+    };
+
+    /**
+     * Adds the full-text index. The existing rows are indexed by TaskBackfill,
+     * until then its guarded sync triggers leave those rows alone.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `task_fts` "
+                    + "USING FTS4(`task` TEXT, `details` TEXT, content=`task_table`)");
+            TaskBackfill.start(db, TaskBackfill.FTS);
+            TaskBackfill.guardFtsTriggers(db);
+        }
+    };
+
+    /**
+     * Adds the completed flag and its time. The list index leads with the flag,
+     * so it only covers the tasks not completed.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `task_table` ADD COLUMN `completed` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `task_table` ADD COLUMN `completed_at` INTEGER");
+            db.execSQL("DROP INDEX IF EXISTS `index_task_table_date_id`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_task_table_completed_date_id` "
+                    + "ON `task_table` (`completed`, `date`, `id`)");
+        }
+    };
+
+    /**
+     * Adds what the sync needs: the uuid of a task on every device, the time
+     * of its last change, the dirty flag and the tombstones of deleted tasks.
+     * TaskBackfill gives a uuid to the existing tasks and marks them dirty.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `task_table` ADD COLUMN `uuid` TEXT");
+            db.execSQL("ALTER TABLE `task_table` ADD COLUMN `updated_at` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `task_table` ADD COLUMN `dirty` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_task_table_uuid` "
+                    + "ON `task_table` (`uuid`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_task_table_dirty` "
+                    + "ON `task_table` (`dirty`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `task_tombstone` (`uuid` TEXT NOT NULL, "
+                    + "`deleted_at` INTEGER NOT NULL, PRIMARY KEY(`uuid`))");
+            TaskTombstone.createTrigger(db);
+            TaskBackfill.start(db, TaskBackfill.UUID);
+        }
+    };
+
+    /**
+     * Adds the time of the last change of each field. The times become
+     * HybridLogicalClock times, the existing ones are converted in place.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            String[] columns = {"task_hlc", "details_hlc", "date_hlc", "completed_hlc"};
+            for (String column : columns) {
+                db.execSQL("ALTER TABLE `task_table` ADD COLUMN `" + column
+                        + "` INTEGER NOT NULL DEFAULT 0");
+            }
+            int shift = HybridLogicalClock.LOGICAL_BITS;
+            db.execSQL("UPDATE `task_table` SET `updated_at` = `updated_at` << " + shift + ", "
+                    + "`task_hlc` = `updated_at` << " + shift + ", "
+                    + "`details_hlc` = `updated_at` << " + shift + ", "
+                    + "`date_hlc` = `updated_at` << " + shift + ", "
+                    + "`completed_hlc` = `updated_at` << " + shift + " "
+                    + "WHERE `updated_at` != 0");
+            db.execSQL("UPDATE `task_tombstone` SET `deleted_at` = `deleted_at` << " + shift);
+            TaskTombstone.createTrigger(db);
+        }
+    };
+
+    /**
+     * Adds the outbox of the remote writes not acknowledged yet.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `outbox_table` (`path` TEXT NOT NULL, "
+                    + "`data` TEXT NOT NULL, `merge` INTEGER NOT NULL, "
+                    + "`revision` INTEGER NOT NULL, `created_at` INTEGER NOT NULL, "
+                    + "`attempts` INTEGER NOT NULL, `next_attempt_at` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`path`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_table_next_attempt_at` "
+                    + "ON `outbox_table` (`next_attempt_at`)");
+        }
+    };
+
+    /**
+     * Adds the drafts autosaved by the editor.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `draft_table` (`task_id` INTEGER NOT NULL, "
+                    + "`task` TEXT, `details` TEXT, `date` INTEGER NOT NULL, "
+                    + "`updated_at` INTEGER NOT NULL, PRIMARY KEY(`task_id`))");
+        }
+    };
+
+    public static final Migration[] ALL = {
+            MIGRATION_1_2,
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8,
+            MIGRATION_8_9,
+    };
+}
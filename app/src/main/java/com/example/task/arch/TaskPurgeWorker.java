@@ -0,0 +1,129 @@
+package com.example.task.arch;
+
+import android.app.Application;
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic job that deletes the tasks completed more than RETENTION_DAYS ago,
+ * BATCH_SIZE rows per write so the writes of the user are not held up,
+ * then gives the freed pages back to the file system.
+ *
+ * The pages are released with incremental vacuum, VACUUM_PAGES per write on the
+ * TaskWriteExecutor. A database created without auto_vacuum = INCREMENTAL is
+ * rebuilt once with a full VACUUM to enable it, also on the writer, between
+ * two of its transactions.
+ */
+public class TaskPurgeWorker extends Worker {
+
+    private static final String TAG = "TaskPurgeWorker";
+    private static final String WORK_NAME = "task-purge";
+
+    static final int RETENTION_DAYS = 7;
+    static final int BATCH_SIZE = 500;
+
+    // Value of PRAGMA auto_vacuum for incremental vacuum.
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+    // Free pages released per write.
+    static final int VACUUM_PAGES = 256;
+
+    public TaskPurgeWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the job once a day, while the device is charging.
+     * Does nothing if it is already scheduled.
+     */
+    public static void schedule(@NonNull Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                TaskPurgeWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Application application = (Application) getApplicationContext();
+        TaskRepository repository = TaskRepository.getRepository(application);
+        long before = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(RETENTION_DAYS);
+        int total = 0;
+        try {
+            int purged;
+            do {
+                if (isStopped()) {
+                    return Result.success(); // The next run goes on.
+                }
+                purged = repository.purgeCompleted(before, BATCH_SIZE).get();
+                total += purged;
+            } while (purged == BATCH_SIZE);
+        } catch (ExecutionException | InterruptedException e) {
+            Log.e(TAG, "Failed purging the completed tasks.", e);
+            return Result.retry();
+        }
+
+        final SupportSQLiteDatabase db = TaskRoomDatabase.getDatabase(application)
+                .getOpenHelper().getWritableDatabase();
+        TaskWriteExecutor writer = repository.getWriteExecutor();
+        long freePages = queryLong(db, "PRAGMA freelist_count");
+        try {
+            if (queryLong(db, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+                // Only takes effect with a rebuild of the file, once.
+                writer.submitOutsideTransaction(new TaskWriteExecutor.Write<Void>() {
+                    @Override
+                    public Void run(@NonNull TaskDao dao) {
+                        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                        db.execSQL("VACUUM");
+                        return null;
+                    }
+                }).get();
+            } else {
+                // A few pages per write, the writes of the user go in between.
+                for (long steps = (freePages + VACUUM_PAGES - 1) / VACUUM_PAGES; steps > 0;
+                     steps--) {
+                    if (isStopped()) {
+                        return Result.success();
+                    }
+                    writer.submit(new TaskWriteExecutor.Write<Long>() {
+                        @Override
+                        public Long run(@NonNull TaskDao dao) {
+                            return queryLong(db, "PRAGMA incremental_vacuum(" + VACUUM_PAGES + ")");
+                        }
+                    }).get();
+                }
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            // The pages are released on the next run.
+            Log.w(TAG, "Failed releasing " + freePages + " free pages.", e);
+            return Result.success();
+        }
+        Log.i(TAG, "Purged " + total + " tasks, released " + freePages + " pages.");
+        return Result.success();
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package com.example.task.arch;
 
 import android.app.Application;
-import android.os.AsyncTask;
+import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.core.os.TraceCompat;
 import androidx.lifecycle.LiveData;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
+import androidx.room.InvalidationTracker;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  * This class holds the implementation code for the methods that interact with the database.
@@ -18,109 +33,497 @@ import java.util.List;
  *
  * To implement a database method is to call it on the data
  * access object (DAO), in the background if applicable.
+ * All writes go through a single TaskWriteExecutor, which
+ * commits the queued writes together in one transaction.
+ * Every change of a task marks it changed, for the sync to upload.
+ * After each change the first tasks of the list are saved to a TaskSnapshot,
+ * shown by the next cold start before the database is open.
  */
 public class TaskRepository {
 
+    private static final String TAG = "TaskRepository";
+    private static final String SNAPSHOT_FILE = "task_list.snapshot";
+
+    // Number of tasks of the snapshot, about a screenful.
+    static final int SNAPSHOT_SIZE = 30;
+
+    private static TaskRepository INSTANCE;
+
+    private TaskRoomDatabase mDatabase;
     private TaskDao mTaskDao;
-    private LiveData<List<Task>> mAllTasks;
+    private DraftDao mDraftDao;
+    private TaskWriteExecutor mWriteExecutor;
+    private final HybridLogicalClock mClock = new HybridLogicalClock();
+    private final File mSnapshotFile;
+    // The last snapshot written, or read from the file.
+    private byte[] mSnapshot;
+
+    public static synchronized TaskRepository getRepository(final Application application) {
+        if (INSTANCE == null) {
+            INSTANCE = new TaskRepository(application);
+        }
+        return INSTANCE;
+    }
 
-    public TaskRepository(Application application) {
-        TaskRoomDatabase db = TaskRoomDatabase.getDatabase(application);
-        mTaskDao = db.taskDao();
-        mAllTasks = mTaskDao.getAllTasks();
+    private TaskRepository(Application application) {
+        mDatabase = TaskRoomDatabase.getDatabase(application);
+        mTaskDao = mDatabase.taskDao();
+        mDraftDao = mDatabase.draftDao();
+        mWriteExecutor = new TaskWriteExecutor(mDatabase);
+        // The stored times can be ahead of the wall clock, set back since or behind
+        // a remote device. Queued before any write, the updates keep the stored
+        // times increasing until it ran.
+        mWriteExecutor.submit(new TaskWriteExecutor.Write<Void>() {
+            @Override
+            public Void run(@NonNull TaskDao dao) {
+                mClock.observe(dao.getLatestHlc());
+                return null;
+            }
+        });
+        // Finish filling in the rows of the last upgrade, if any.
+        TaskBackfill.schedule(mDatabase, mWriteExecutor);
+        // Remove the tasks completed long ago, in the background.
+        TaskPurgeWorker.schedule(application);
+
+        mSnapshotFile = new File(application.getNoBackupFilesDir(), SNAPSHOT_FILE);
+        mDatabase.getInvalidationTracker().addObserver(
+                new InvalidationTracker.Observer("task_table") {
+                    @Override
+                    public void onInvalidated(@NonNull Set<String> tables) {
+                        // Called on a background thread, after the commit.
+                        saveSnapshot();
+                    }
+                });
     }
 
-    public LiveData<List<Task>> getAllTasks() {
-        return mAllTasks;
+    /**
+     * The first rows of the list as saved after the last change, read from
+     * a memory-mapped file. Meant to be shown on a cold start, until the list
+     * of getPagedListItems() arrives and replaces it.
+     *
+     * @param pageSize The page size of the list.
+     * @return The rows of the snapshot, null if there is no valid one.
+     */
+    @Nullable
+    public PagedList<TaskListItem> getSnapshot(int pageSize) {
+        List<TaskListItem> items;
+        TraceCompat.beginSection("TaskRepository.readSnapshot");
+        try {
+            items = TaskSnapshot.read(mSnapshotFile);
+        } finally {
+            TraceCompat.endSection();
+        }
+        if (items == null || items.isEmpty()) {
+            return null;
+        }
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(pageSize)
+                .setEnablePlaceholders(false)
+                .build();
+        // Every row is in memory, the list is loaded on the spot.
+        Executor direct = new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        };
+        return new PagedList.Builder<>(new TaskSnapshot.SnapshotDataSource(items), config)
+                .setNotifyExecutor(direct)
+                .setFetchExecutor(direct)
+                .build();
+    }
+
+    /**
+     * Saves the first rows of the list, unless they did not change.
+     */
+    @WorkerThread
+    private synchronized void saveSnapshot() {
+        byte[] snapshot = TaskSnapshot.encode(mTaskDao.getFirstListItems(SNAPSHOT_SIZE));
+        if (mSnapshot == null) {
+            List<TaskListItem> saved = TaskSnapshot.read(mSnapshotFile);
+            mSnapshot = saved != null ? TaskSnapshot.encode(saved) : new byte[0];
+        }
+        if (Arrays.equals(snapshot, mSnapshot)) {
+            return;
+        }
+        try {
+            TaskSnapshot.write(mSnapshotFile, snapshot);
+            mSnapshot = snapshot;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed saving the snapshot of the list.", e);
+        }
+    }
+
+    /**
+     * Opens the database and reads the first page of the list on Room's query
+     * executor, so the page is in the SQLite cache when the list asks for it.
+     * Meant to be called at startup, before the UI is built.
+     *
+     * @param pageSize The size of the first page of the list.
+     */
+    public void prewarm(final int pageSize) {
+        mDatabase.getQueryExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                TraceCompat.beginSection("TaskRepository.openDatabase");
+                try {
+                    mDatabase.getOpenHelper().getWritableDatabase();
+                } finally {
+                    TraceCompat.endSection();
+                }
+                TraceCompat.beginSection("TaskRepository.firstPage");
+                try {
+                    mTaskDao.getFirstListItems(pageSize);
+                } finally {
+                    TraceCompat.endSection();
+                }
+            }
+        });
     }
 
-    public void insert(Task task) {
-        new insertTaskAsyncTask(mTaskDao).execute(task);
+    /**
+     * Builds a paged list of the rows of all the tasks. Only the pages around what
+     * is on screen are read from the database, the rest is loaded while the list scrolls.
+     * A page is read through the TaskKeyset, from the (date, id) of its neighbour.
+     *
+     * @param pageSize         Number of tasks loaded at a time.
+     * @param prefetchDistance How far from the loaded content the next page is requested.
+     */
+    public LiveData<PagedList<TaskListItem>> getPagedListItems(int pageSize,
+                                                               int prefetchDistance) {
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(pageSize)
+                .setPrefetchDistance(prefetchDistance)
+                .setInitialLoadSizeHint(pageSize * 2)
+                .setEnablePlaceholders(false)
+                .build();
+        return new LivePagedListBuilder<>(new TaskKeyset.Factory(mDatabase), config).build();
     }
 
-    public void update(Task task) {
-        new updateTaskAsyncTask(mTaskDao).execute(task);
+    /**
+     * Loads the whole task with the given id, after the writes queued before,
+     * for the editor. The callback receives null if the task was deleted.
+     */
+    public Future<Task> getTask(final int id, @NonNull TaskWriteExecutor.Callback<Task> callback) {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Task>() {
+            @Override
+            public Task run(@NonNull TaskDao dao) {
+                return dao.getTask(id);
+            }
+        }, callback);
     }
 
-    // Must run off main thread
-    public void delete(Task task) {
-        new deleteTaskAsyncTask(mTaskDao).execute(task);
+    /**
+     * Saves the draft of the editor, replacing the previous one of the same task.
+     * Goes through the writer, so drafts typed in a burst share its transactions.
+     */
+    public Future<Void> saveDraft(@NonNull final TaskDraft draft) {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Void>() {
+            @Override
+            public Void run(@NonNull TaskDao dao) {
+                mDraftDao.put(draft);
+                return null;
+            }
+        });
     }
 
-    public void deleteAll() {
-        new deleteAllTaskAsyncTask(mTaskDao).execute();
+    /**
+     * Deletes the draft of the task, once it is saved or cleared.
+     *
+     * @param taskId The id of the task, or TaskDraft.NEW_TASK_ID.
+     */
+    public Future<Integer> deleteDraft(final int taskId) {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                return mDraftDao.delete(taskId);
+            }
+        });
     }
 
-    // Static inner classes below here to run database interactions in the background.
     /**
-     * Inserts a task into the database.
+     * Loads the draft of the task after the writes queued before.
+     * The callback receives null if there is none.
+     *
+     * @param taskId The id of the task, or TaskDraft.NEW_TASK_ID.
      */
-    private static class insertTaskAsyncTask extends AsyncTask<Task, Void, Void> {
+    public Future<TaskDraft> getDraft(final int taskId,
+                                      @NonNull TaskWriteExecutor.Callback<TaskDraft> callback) {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<TaskDraft>() {
+            @Override
+            public TaskDraft run(@NonNull TaskDao dao) {
+                return mDraftDao.get(taskId);
+            }
+        }, callback);
+    }
 
-        private TaskDao mAsyncTaskDao;
+    /**
+     * Loads the draft autosaved last, to offer resuming it.
+     * The callback receives null if there is none.
+     */
+    public Future<TaskDraft> getLatestDraft(
+            @NonNull TaskWriteExecutor.Callback<TaskDraft> callback) {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<TaskDraft>() {
+            @Override
+            public TaskDraft run(@NonNull TaskDao dao) {
+                return mDraftDao.getLatest();
+            }
+        }, callback);
+    }
 
-        public insertTaskAsyncTask(TaskDao dao) {
-            this.mAsyncTaskDao = dao;
+    /**
+     * Searches the task and details of all tasks, best matches first.
+     * Every word of the query matches as a prefix, so the results
+     * follow the text as it is typed.
+     *
+     * @param query The text typed by the user.
+     * @param limit The maximum number of results, the best ranked ones.
+     */
+    @WorkerThread
+    public List<TaskSearchResult> search(String query, int limit) {
+        String matchQuery = toMatchQuery(query);
+        if (matchQuery.isEmpty()) {
+            return Collections.emptyList();
         }
+        return mTaskDao.search(matchQuery, limit);
+    }
 
-        @Override
-        protected Void doInBackground(final Task... tasks) {
-            mAsyncTaskDao.insert(tasks[0]);
-            return null;
+    /**
+     * Turns the typed text into an FTS MATCH expression, keeping only
+     * letters and digits so the text cannot form FTS operators.
+     */
+    static String toMatchQuery(String query) {
+        if (query == null) {
+            return "";
         }
+        StringBuilder match = new StringBuilder();
+        for (String word : query.split("\\s+")) {
+            StringBuilder term = new StringBuilder();
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    term.append(c);
+                }
+            }
+            if (term.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(term).append('*');
+            }
+        }
+        return match.toString();
+    }
+
+    /**
+     * The clock giving the times of the changes, the sync makes it observe the remote ones.
+     */
+    public HybridLogicalClock getClock() {
+        return mClock;
     }
 
     /**
-     * Updates a task in the database.
+     * The writer of this repository, exposes the queue and batch counters.
      */
-    private static class updateTaskAsyncTask extends AsyncTask<Task, Void, Void> {
+    public TaskWriteExecutor getWriteExecutor() {
+        return mWriteExecutor;
+    }
 
-        private TaskDao mAsyncTaskDao;
+    public Future<Long> insert(Task task) {
+        return insert(task, null);
+    }
 
-        public updateTaskAsyncTask(TaskDao dao) {
-            this.mAsyncTaskDao = dao;
-        }
+    /**
+     * Inserts a task, the callback receives the row id of the new task.
+     */
+    public Future<Long> insert(final Task task, @Nullable TaskWriteExecutor.Callback<Long> callback) {
+        newUuid(task);
+        task.markChanged(mClock.now());
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Long>() {
+            @Override
+            public Long run(@NonNull TaskDao dao) {
+                return dao.insert(task);
+            }
+        }, callback);
+    }
 
-        @Override
-        protected Void doInBackground(final Task... tasks) {
-            mAsyncTaskDao.update(tasks[0]);
-            return null;
+    public Future<Integer> update(Task task) {
+        return update(task, null);
+    }
+
+    /**
+     * Updates the task, details and date of a task,
+     * the callback receives the number of updated rows.
+     */
+    public Future<Integer> update(final Task task,
+                                  @Nullable TaskWriteExecutor.Callback<Integer> callback) {
+        final long hlc = mClock.now();
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                return dao.updateContent(task, hlc);
+            }
+        }, callback);
+    }
+
+    public Future<Integer> delete(Task task) {
+        return delete(task, null);
+    }
+
+    /**
+     * Deletes a single task, the callback receives the number of deleted rows.
+     */
+    public Future<Integer> delete(final Task task,
+                                  @Nullable TaskWriteExecutor.Callback<Integer> callback) {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                return dao.delete(task);
+            }
+        }, callback);
+    }
+
+    /**
+     * Inserts the tasks in one transaction, the callback receives their row ids
+     * in the same order, -1 for a task that was ignored.
+     */
+    public Future<List<Long>> insert(final List<Task> tasks,
+                                     @Nullable TaskWriteExecutor.Callback<List<Long>> callback) {
+        for (Task task : tasks) {
+            newUuid(task);
         }
+        markChanged(tasks);
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<List<Long>>() {
+            @Override
+            public List<Long> run(@NonNull TaskDao dao) {
+                return dao.insert(tasks);
+            }
+        }, callback);
+    }
+
+    /**
+     * Updates the tasks in one transaction, every column is written.
+     * The callback receives the number of updated rows.
+     */
+    public Future<Integer> update(final List<Task> tasks,
+                                  @Nullable TaskWriteExecutor.Callback<Integer> callback) {
+        markChanged(tasks);
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                return dao.update(tasks);
+            }
+        }, callback);
     }
 
     /**
-     * Deletes a single task from the database.
+     * Deletes the tasks with the given ids in one transaction,
+     * the callback receives the number of deleted rows.
      */
-    private static class deleteTaskAsyncTask extends AsyncTask<Task, Void, Void> {
+    public Future<Integer> deleteByIds(final List<Integer> ids,
+                                       @Nullable TaskWriteExecutor.Callback<Integer> callback) {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                return dao.deleteByIds(ids);
+            }
+        }, callback);
+    }
 
-        private TaskDao mAsyncTaskDao;
+    /**
+     * Marks the tasks with the given ids completed now, or not completed again.
+     * The callback receives the number of updated rows.
+     */
+    public Future<Integer> setCompleted(final List<Integer> ids, final boolean completed,
+                                        @Nullable TaskWriteExecutor.Callback<Integer> callback) {
+        final long hlc = mClock.now();
+        final Long completedAt = completed ? System.currentTimeMillis() : null;
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                return dao.setCompleted(ids, completed, completedAt, hlc);
+            }
+        }, callback);
+    }
 
-        public deleteTaskAsyncTask(TaskDao dao) {
-            this.mAsyncTaskDao = dao;
+    /**
+     * Gives a uuid to a new task built without one, from an existing one for instance.
+     */
+    private static void newUuid(Task task) {
+        if (task.getUuid() == null) {
+            task.setUuid(UUID.randomUUID().toString());
         }
+    }
 
-        @Override
-        protected Void doInBackground(final Task... tasks) {
-            mAsyncTaskDao.delete(tasks[0]);
-            return null;
+    private void markChanged(List<Task> tasks) {
+        long hlc = mClock.now();
+        for (Task task : tasks) {
+            task.markChanged(hlc);
         }
     }
 
+    /**
+     * Deletes at most limit of the tasks completed before the given time,
+     * the future receives the number of deleted rows.
+     */
+    Future<Integer> purgeCompleted(final long before, final int limit) {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                return dao.purgeCompleted(before, limit);
+            }
+        });
+    }
+
     /**
      * Deletes all tasks from the database (does not delete the table).
      */
-    private static class deleteAllTaskAsyncTask extends AsyncTask<Void, Void, Void> {
+    public Future<Integer> deleteAll() {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Integer>() {
+            @Override
+            public Integer run(@NonNull TaskDao dao) {
+                return dao.deleteAll();
+            }
+        });
+    }
 
-        private TaskDao mAsyncTaskDao;
+    /**
+     * Whether some local changes were not uploaded yet, the callback receives the answer.
+     */
+    public void hasLocalChanges(@NonNull TaskWriteExecutor.Callback<Boolean> callback) {
+        mWriteExecutor.submit(new TaskWriteExecutor.Write<Boolean>() {
+            @Override
+            public Boolean run(@NonNull TaskDao dao) {
+                return dao.hasLocalChanges();
+            }
+        }, callback);
+    }
 
-        public deleteAllTaskAsyncTask(TaskDao dao) {
-            this.mAsyncTaskDao = dao;
-        }
+    /**
+     * Deletes the data of the signed out user in one transaction: the tasks,
+     * the changes not uploaded, the outbox, the drafts, and the snapshot.
+     * Nothing is left for the sync of the next user.
+     */
+    public Future<Void> clearLocalData() {
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Void>() {
+            @Override
+            public Void run(@NonNull TaskDao dao) {
+                dao.deleteAll();
+                // Deleting the tasks records a tombstone of each, the trigger runs in this transaction.
+                dao.deleteAllTombstones();
+                mDatabase.outboxDao().deleteAll();
+                mDraftDao.deleteAll();
+                deleteSnapshot();
+                return null;
+            }
+        });
+    }
 
-        @Override
-        protected Void doInBackground(Void... voids) {
-            mAsyncTaskDao.deleteAll();
-            return null;
+    private synchronized void deleteSnapshot() {
+        if (!mSnapshotFile.delete() && mSnapshotFile.exists()) {
+            Log.w(TAG, "Failed deleting the snapshot.");
         }
+        // The empty list, the snapshot saved after the commit is not written.
+        mSnapshot = TaskSnapshot.encode(Collections.<TaskListItem>emptyList());
     }
 }
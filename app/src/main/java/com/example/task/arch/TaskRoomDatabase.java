@@ -10,6 +10,9 @@ import androidx.room.RoomDatabase;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import java.util.Calendar;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * TaskRoomDatabase. Includes code to create the database.
@@ -17,23 +20,27 @@ import java.util.Calendar;
  * with it happen through the TaskViewModel.
  */
 
-@Database(entities = {Task.class}, version = 1, exportSchema = false)
+@Database(entities = {Task.class, TaskFts.class, TaskTombstone.class, OutboxOp.class,
+        TaskDraft.class}, version = TaskRoomDatabase.VERSION, exportSchema = true)
 public abstract class TaskRoomDatabase extends RoomDatabase {
 
+    // The schema version, the migration tests upgrade to it.
+    static final int VERSION = 9;
+
     private static TaskRoomDatabase INSTANCE;
 
     public abstract TaskDao taskDao();
 
+    public abstract OutboxDao outboxDao();
+
+    public abstract DraftDao draftDao();
+
     public static synchronized TaskRoomDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (TaskRoomDatabase.class) {
                 if (INSTANCE == null) {
                     // Create database here.
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                            TaskRoomDatabase.class, "task_database")
-                            // Wipes and rebuilds instead of migrating if no Migration object.
-                            // Migration is not part of this practical.
-                            .fallbackToDestructiveMigration()
+                    INSTANCE = createBuilder(context, "task_database", StorageConfig.DEFAULT)
                             .addCallback(sRoomDatabaseCallback)
                             .build();
                 }
@@ -42,6 +49,101 @@ public abstract class TaskRoomDatabase extends RoomDatabase {
         return INSTANCE;
     }
 
+    /**
+     * Creates a builder of the task database with the given storage configuration.
+     * The app uses getDatabase(), this is also used to measure other configurations.
+     */
+    public static RoomDatabase.Builder<TaskRoomDatabase> createBuilder(final Context context,
+            String name, final StorageConfig config) {
+        return Room.databaseBuilder(context.getApplicationContext(),
+                TaskRoomDatabase.class, name)
+                // Upgrades keep the tasks, see TaskMigrations.
+                .addMigrations(TaskMigrations.ALL)
+                .setJournalMode(config.journalMode)
+                .setQueryExecutor(Executors.newFixedThreadPool(config.readerThreads,
+                        new ThreadFactory() {
+                            private final AtomicInteger mCount = new AtomicInteger();
+
+                            @Override
+                            public Thread newThread(@NonNull Runnable runnable) {
+                                return new Thread(runnable,
+                                        "task-db-reader-" + mCount.incrementAndGet());
+                            }
+                        }))
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        super.onCreate(db);
+                        TaskTombstone.createTrigger(db);
+                    }
+
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        super.onOpen(db);
+                        config.apply(db);
+                        TaskBackfill.onOpen(db);
+                    }
+                });
+    }
+
+    /**
+     * Storage settings of the task database.
+     *
+     * WAL lets the list read while TaskWriteExecutor writes, instead of waiting
+     * for the write transaction. In WAL mode synchronous NORMAL is durable against
+     * app crashes and only syncs at checkpoints, which run once the log reaches
+     * walAutoCheckpoint pages; the log file is then truncated to journalSizeLimit.
+     *
+     * The PRAGMAs are set on the connection Room opens first, the one used for
+     * writes. The framework configures the extra read connections of WAL itself.
+     * The framework SQLiteDatabase does not expose its statement cache through
+     * Room's open helper, so it keeps its default size.
+     */
+    public static class StorageConfig {
+
+        public static final StorageConfig DEFAULT = new StorageConfig(
+                JournalMode.WRITE_AHEAD_LOGGING, "NORMAL", 2048, 1000, 1024 * 1024, 4);
+
+        public final JournalMode journalMode;
+        public final String synchronous;
+        public final int cacheSizeKib;
+        public final int walAutoCheckpoint;
+        public final long journalSizeLimit;
+        public final int readerThreads;
+
+        /**
+         * @param journalMode       WRITE_AHEAD_LOGGING, TRUNCATE or AUTOMATIC.
+         * @param synchronous       OFF, NORMAL or FULL.
+         * @param cacheSizeKib      Size of the page cache of the connection, in KiB.
+         * @param walAutoCheckpoint Size of the log that triggers a checkpoint, in pages.
+         * @param journalSizeLimit  Size the log is truncated to after a checkpoint, in bytes.
+         * @param readerThreads     Number of threads running Room queries.
+         */
+        public StorageConfig(JournalMode journalMode, String synchronous, int cacheSizeKib,
+                             int walAutoCheckpoint, long journalSizeLimit, int readerThreads) {
+            this.journalMode = journalMode;
+            this.synchronous = synchronous;
+            this.cacheSizeKib = cacheSizeKib;
+            this.walAutoCheckpoint = walAutoCheckpoint;
+            this.journalSizeLimit = journalSizeLimit;
+            this.readerThreads = readerThreads;
+        }
+
+        void apply(SupportSQLiteDatabase db) {
+            // Some PRAGMAs return a row, run them all as queries.
+            pragma(db, "synchronous = " + synchronous);
+            pragma(db, "cache_size = -" + cacheSizeKib);
+            pragma(db, "journal_size_limit = " + journalSizeLimit);
+            if (db.isWriteAheadLoggingEnabled()) {
+                pragma(db, "wal_autocheckpoint = " + walAutoCheckpoint);
+            }
+        }
+
+        private static void pragma(SupportSQLiteDatabase db, String pragma) {
+            db.query("PRAGMA " + pragma).close();
+        }
+    }
+
     // This callback is called when the database has opened.
     // In this case, use PopulateDbAsync to populate the database
     // with the initial data set if the database has no entries.
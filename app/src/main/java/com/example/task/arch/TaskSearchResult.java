@@ -0,0 +1,73 @@
+package com.example.task.arch;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+import androidx.room.Ignore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A task matching a search, with a snippet of the matching text and its rank.
+ */
+public class TaskSearchResult {
+
+    // Marks around the matching terms in the snippet.
+    public static final String SNIPPET_START = "<b>";
+    public static final String SNIPPET_END = "</b>";
+
+    // Weight of a match in each column of task_fts: task, details.
+    private static final double[] COLUMN_WEIGHTS = {2.0, 1.0};
+
+    @Embedded
+    public Task task;
+
+    @ColumnInfo(name = "snippet")
+    public String snippet;
+
+    @Ignore
+    public double rank;
+
+    /**
+     * A match of a search before it is ranked, read without the text of the task.
+     */
+    public static class Match {
+
+        @ColumnInfo(name = "id")
+        public int id;
+
+        // The matchinfo(task_fts, 'pcx') blob of the match.
+        @ColumnInfo(name = "match_info")
+        public byte[] matchInfo;
+
+        @Ignore
+        double rank;
+    }
+
+    /**
+     * Ranks a match from its matchinfo 'pcx' blob: for every term and column,
+     * the hits in this task divided by the hits in all tasks, weighted by column.
+     * Rare terms and matches in the task title count the most.
+     */
+    static double computeRank(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 8) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phraseCount = buffer.getInt(0);
+        int columnCount = buffer.getInt(4);
+        double rank = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int offset = 8 + 12 * (phrase * columnCount + column);
+                int hitsInRow = buffer.getInt(offset);
+                int hitsInAllRows = buffer.getInt(offset + 4);
+                if (hitsInRow > 0 && hitsInAllRows > 0) {
+                    double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                    rank += weight * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return rank;
+    }
+}
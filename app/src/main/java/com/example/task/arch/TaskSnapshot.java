@@ -0,0 +1,219 @@
+package com.example.task.arch;
+
+import android.util.AtomicFile;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.PositionalDataSource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the first tasks of the list, shown on a cold start
+ * before the database is open.
+ *
+ * Layout, big endian:
+ *
+ *     int magic, int version, int count,
+ *     count × (int id, long date or NO_DATE, int content hash, string task,
+ *     string preview),
+ *     long CRC32 of all the bytes before it.
+ *
+ * A string is its UTF-8 length, -1 for null, then its bytes. A file with
+ * another magic or version, a wrong checksum or cut short is ignored.
+ */
+public final class TaskSnapshot {
+
+    private static final int MAGIC = 0x54534e50; // "TSNP"
+    // 2: the details were replaced by the preview of TaskListItem.
+    // 3: the content hash of the task was added.
+    private static final int VERSION = 3;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    // Size of the header and of the checksum, in bytes.
+    private static final int HEADER_SIZE = 12;
+    private static final int CHECKSUM_SIZE = 8;
+
+    private TaskSnapshot() {
+        // Static helpers only.
+    }
+
+    /**
+     * Encodes the rows, in the order of the list.
+     */
+    @NonNull
+    static byte[] encode(@NonNull List<TaskListItem> items) {
+        List<byte[]> strings = new ArrayList<>(items.size() * 2);
+        int size = HEADER_SIZE + CHECKSUM_SIZE;
+        for (TaskListItem item : items) {
+            byte[] text = utf8(item.task);
+            byte[] preview = utf8(item.preview);
+            strings.add(text);
+            strings.add(preview);
+            size += 4 + 8 + 4 + stringSize(text) + stringSize(preview);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            TaskListItem item = items.get(i);
+            buffer.putInt(item.id);
+            buffer.putLong(item.date != null ? item.date.getTime() : NO_DATE);
+            buffer.putInt(item.contentHash);
+            putString(buffer, strings.get(2 * i));
+            putString(buffer, strings.get(2 * i + 1));
+        }
+        buffer.putLong(checksum(buffer.array(), buffer.position()));
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a snapshot, from its position to its limit.
+     *
+     * @return The rows, null if the snapshot is not valid.
+     */
+    @Nullable
+    static List<TaskListItem> decode(@NonNull ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (length < HEADER_SIZE + CHECKSUM_SIZE) {
+            return null;
+        }
+        // Checksum first, nothing of a corrupt file is parsed.
+        byte[] bytes = new byte[length - CHECKSUM_SIZE];
+        buffer.get(bytes);
+        if (buffer.getLong() != checksum(bytes, bytes.length)) {
+            return null;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        try {
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                return null;
+            }
+            int count = data.getInt();
+            if (count < 0 || count > data.remaining()) {
+                return null;
+            }
+            List<TaskListItem> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = data.getInt();
+                long date = data.getLong();
+                int contentHash = data.getInt();
+                String text = getString(data);
+                String preview = getString(data);
+                items.add(new TaskListItem(id, text, preview,
+                        date != NO_DATE ? new Date(date) : null, contentHash));
+            }
+            return data.hasRemaining() ? null : items;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the snapshot file, atomically: a reader sees the old or the new file.
+     */
+    static void write(@NonNull File file, @NonNull byte[] snapshot) throws IOException {
+        AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream out = atomicFile.startWrite();
+        try {
+            out.write(snapshot);
+            atomicFile.finishWrite(out);
+        } catch (IOException e) {
+            atomicFile.failWrite(out);
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the snapshot file and decodes it.
+     *
+     * @return The rows, null if there is no valid snapshot.
+     */
+    @Nullable
+    static List<TaskListItem> read(@NonNull File file) {
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (FileNotFoundException e) {
+            return null; // No snapshot yet.
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Serves the rows of a snapshot to a PagedList, the list shown until the live one.
+     */
+    static class SnapshotDataSource extends PositionalDataSource<TaskListItem> {
+
+        private final List<TaskListItem> mItems;
+
+        SnapshotDataSource(List<TaskListItem> items) {
+            this.mItems = items;
+        }
+
+        @Override
+        public void loadInitial(@NonNull LoadInitialParams params,
+                                @NonNull LoadInitialCallback<TaskListItem> callback) {
+            callback.onResult(mItems, 0);
+        }
+
+        @Override
+        public void loadRange(@NonNull LoadRangeParams params,
+                              @NonNull LoadRangeCallback<TaskListItem> callback) {
+            // Everything was loaded first, the snapshot has nothing more.
+            callback.onResult(Collections.<TaskListItem>emptyList());
+        }
+    }
+
+    private static byte[] utf8(@Nullable String text) {
+        return text != null ? text.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int stringSize(@Nullable byte[] string) {
+        return 4 + (string != null ? string.length : 0);
+    }
+
+    private static void putString(ByteBuffer buffer, @Nullable byte[] string) {
+        if (string == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(string.length).put(string);
+        }
+    }
+
+    @Nullable
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        String string = new String(buffer.array(), buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    private static long checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.task.arch;
+
+import androidx.room.ColumnInfo;
+
+import java.util.Objects;
+
+/**
+ * The columns of a task shown by the widget. The details are not read.
+ */
+public class TaskSummary {
+
+    @ColumnInfo(name = "id")
+    public int id;
+
+    @ColumnInfo(name = "task")
+    public String task;
+
+    // The date of the task in milliseconds, the query only returns dated tasks.
+    @ColumnInfo(name = "date")
+    public long date;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TaskSummary that = (TaskSummary) o;
+        return id == that.id && date == that.date && Objects.equals(task, that.task);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, task, date);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.task.arch;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * A task deleted on this device and not yet uploaded by the sync.
+ *
+ * Tombstones are recorded by a trigger on task_table, for the tasks that
+ * were not completed. A completed task is already marked so on the other
+ * devices, removing it (by TaskPurgeWorker for instance) is not uploaded.
+ */
+@Entity(tableName = "task_tombstone")
+public class TaskTombstone {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "uuid")
+    private String mUuid;
+
+    // HybridLogicalClock time of the deletion, after every change of the task.
+    @ColumnInfo(name = "deleted_at")
+    private long mDeletedAt;
+
+    public TaskTombstone(@NonNull String mUuid, long mDeletedAt) {
+        this.mUuid = mUuid;
+        this.mDeletedAt = mDeletedAt;
+    }
+
+    @NonNull
+    public String getUuid() {
+        return mUuid;
+    }
+
+    public long getDeletedAt() {
+        return mDeletedAt;
+    }
+
+    /**
+     * Creates the trigger recording the tombstones. Room does not create
+     * triggers of its own entities, this runs on creation and in the migration.
+     */
+    static void createTrigger(SupportSQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS `task_tombstone_after_delete`");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `task_tombstone_after_delete` "
+                + "AFTER DELETE ON `task_table` "
+                + "WHEN OLD.`uuid` IS NOT NULL AND OLD.`completed` = 0 BEGIN "
+                + "INSERT OR REPLACE INTO `task_tombstone` (`uuid`, `deleted_at`) "
+                + "VALUES (OLD.`uuid`, max(OLD.`updated_at` + 1, "
+                + "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER) << "
+                + HybridLogicalClock.LOGICAL_BITS + ")); END");
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.task.arch;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single writer for the task database.
+ *
+ * Every write is queued and a dedicated background thread drains the queue,
+ * running all the writes it finds in one Room transaction. A burst of edits
+ * therefore costs one commit (and one fsync) instead of one per task.
+ * When a write of the batch throws, the batch is rolled back and its writes
+ * run again one transaction each, so only the failing write is lost.
+ *
+ * Each submitted write returns a Future, and an optional callback is
+ * delivered on the main thread once the transaction has been committed.
+ * Cancelling the future of a write still in the queue removes it.
+ */
+public class TaskWriteExecutor {
+
+    private static final String TAG = "TaskWriteExecutor";
+
+    // Upper bounds of the writer.
+    static final int MAX_QUEUE_SIZE = 10000;
+    static final int MAX_BATCH_SIZE = 500;
+
+    private final TaskRoomDatabase mDatabase;
+    private final BlockingQueue<PendingWrite<?>> mQueue =
+            new LinkedBlockingQueue<>(MAX_QUEUE_SIZE);
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean(false);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mWriter = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "task-db-writer");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+
+    // Counters
+    private final AtomicLong mBatchCount = new AtomicLong();
+    private final AtomicLong mWriteCount = new AtomicLong();
+    private volatile int mLastBatchSize;
+    private volatile int mMaxBatchSize;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * The app has a single writer, the one of TaskRepository.
+     * Other instances are only meant for tests on their own database.
+     */
+    public TaskWriteExecutor(TaskRoomDatabase database) {
+        this.mDatabase = database;
+    }
+
+    /**
+     * A database write. It runs on the writer thread,
+     * inside the transaction of the current batch.
+     */
+    public interface Write<T> {
+        T run(@NonNull TaskDao dao);
+    }
+
+    /**
+     * Called on the main thread after the batch holding the write was committed.
+     * A write that failed or was rejected is completed with a null result, the error
+     * is logged and thrown by the future.
+     */
+    public interface Callback<T> {
+        void onComplete(@Nullable T result);
+    }
+
+    public <T> Future<T> submit(@NonNull Write<T> write) {
+        return submit(write, null);
+    }
+
+    /**
+     * Queue a write for the next batch.
+     *
+     * @param write    The write to run.
+     * @param callback Optional callback for the result, may be null.
+     * @return A future that completes when the batch was committed.
+     */
+    public <T> Future<T> submit(@NonNull Write<T> write, @Nullable Callback<T> callback) {
+        PendingWrite<T> pending = new PendingWrite<>(write, callback);
+        if (!enqueue(pending)) {
+            Log.e(TAG, "Too many pending task writes, dropping one.");
+            pending.fail(new RejectedExecutionException("Too many pending task writes."));
+            return pending;
+        }
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mWriter.execute(mDrain);
+        }
+        return pending;
+    }
+
+    /**
+     * Run a write on the writer thread outside of any transaction, for the statements
+     * SQLite refuses inside one, such as VACUUM. It runs between two batches, the writes
+     * queued meanwhile wait for it.
+     *
+     * @return A future that completes when the write ran.
+     */
+    public <T> Future<T> submitOutsideTransaction(@NonNull final Write<T> write) {
+        return mWriter.submit(new Callable<T>() {
+            @Override
+            public T call() {
+                return write.run(mDatabase.taskDao());
+            }
+        });
+    }
+
+    /**
+     * Queue the write. A background caller waits for room in a full queue,
+     * the main thread never blocks: its write fails instead.
+     */
+    private boolean enqueue(PendingWrite<?> pending) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            return mQueue.offer(pending);
+        }
+        try {
+            mQueue.put(pending);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Number of writes waiting for the next batch.
+     */
+    public int getQueueDepth() {
+        return mQueue.size();
+    }
+
+    /**
+     * Number of writes committed by the last batch.
+     */
+    public int getLastBatchSize() {
+        return mLastBatchSize;
+    }
+
+    /**
+     * Largest number of writes committed by a single batch.
+     */
+    public int getMaxBatchSize() {
+        return mMaxBatchSize;
+    }
+
+    /**
+     * Number of transactions committed so far.
+     */
+    public long getBatchCount() {
+        return mBatchCount.get();
+    }
+
+    /**
+     * Number of writes committed so far.
+     */
+    public long getWriteCount() {
+        return mWriteCount.get();
+    }
+
+    /**
+     * Run every queued write, in batches of at most MAX_BATCH_SIZE.
+     */
+    private void drain() {
+        final List<PendingWrite<?>> batch = new ArrayList<>();
+        while (true) {
+            mDrainScheduled.set(false);
+            mQueue.drainTo(batch, MAX_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return;
+            }
+            // Claim the drain again, so that writes queued meanwhile are picked up here.
+            mDrainScheduled.set(true);
+
+            final TaskDao dao = mDatabase.taskDao();
+            try {
+                runInTransaction(batch, dao);
+                for (PendingWrite<?> pending : batch) {
+                    pending.commit();
+                }
+            } catch (RuntimeException e) {
+                // A write failing inside the transaction rolls back the whole batch, Room
+                // marks it failed, so each write is replayed alone to only fail that one.
+                Log.w(TAG, "Failed writing a batch of " + batch.size() + " tasks, replaying it.", e);
+                for (PendingWrite<?> pending : batch) {
+                    replay(pending, dao);
+                }
+            }
+
+            int size = batch.size();
+            mLastBatchSize = size;
+            if (size > mMaxBatchSize) {
+                mMaxBatchSize = size;
+            }
+            mBatchCount.incrementAndGet();
+            mWriteCount.addAndGet(size);
+            batch.clear();
+        }
+    }
+
+    private void runInTransaction(final List<PendingWrite<?>> writes, final TaskDao dao) {
+        mDatabase.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (PendingWrite<?> pending : writes) {
+                    pending.runWrite(dao);
+                }
+            }
+        });
+    }
+
+    /**
+     * Run a write of a failed batch in its own transaction.
+     */
+    private void replay(PendingWrite<?> pending, TaskDao dao) {
+        try {
+            runInTransaction(Collections.<PendingWrite<?>>singletonList(pending), dao);
+            pending.commit();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed writing a task.", e);
+            pending.fail(e);
+        }
+    }
+
+    /**
+     * A queued write. The result is only published after the transaction commits,
+     * so a caller never observes a write that was later rolled back.
+     */
+    private class PendingWrite<T> implements Future<T> {
+
+        private final Write<T> mWrite;
+        private final Callback<T> mCallback;
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private T mResult;
+        private Throwable mError;
+        private volatile boolean mCancelled;
+
+        PendingWrite(Write<T> write, Callback<T> callback) {
+            this.mWrite = write;
+            this.mCallback = callback;
+        }
+
+        void runWrite(TaskDao dao) {
+            mResult = mWrite.run(dao);
+        }
+
+        void commit() {
+            mDone.countDown();
+            postResult(mResult);
+        }
+
+        void fail(Throwable error) {
+            mError = error;
+            mDone.countDown();
+            postResult(null);
+        }
+
+        private void postResult(final T result) {
+            if (mCallback != null) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mCallback.onComplete(result);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Only a write still in the queue is cancelled, a drained one commits with its batch.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!mQueue.remove(this)) {
+                return false;
+            }
+            mCancelled = true;
+            mDone.countDown();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return mDone.getCount() == 0;
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            mDone.await();
+            return report();
+        }
+
+        @Override
+        public T get(long timeout, @NonNull TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!mDone.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return report();
+        }
+
+        private T report() throws ExecutionException {
+            if (mCancelled) {
+                throw new CancellationException();
+            }
+            if (mError != null) {
+                throw new ExecutionException(mError);
+            }
+            return mResult;
+        }
+    }
+}
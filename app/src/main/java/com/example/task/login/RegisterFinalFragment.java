@@ -30,9 +30,8 @@ import android.widget.Toast;
 
 import com.example.task.MainActivity;
 import com.example.task.R;
+import com.example.task.sync.Outbox;
 import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
@@ -41,8 +40,6 @@ import com.google.firebase.auth.AuthResult;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthUserCollisionException;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.util.HashMap;
 import java.util.List;
@@ -71,7 +68,7 @@ public class RegisterFinalFragment extends Fragment {
     private Activity mActivity;
     private FirebaseAuth mAuth;
     private FirebaseUser mUser;
-    private FirebaseFirestore mStore;
+    private Outbox mOutbox;
     private Bundle mBundle;
     private RegisterFinalFragmentArgs mArgs;
     private ConstraintLayout mParentLayout;
@@ -96,7 +93,7 @@ public class RegisterFinalFragment extends Fragment {
         // Initialize the Firebase instances.
         mAuth = FirebaseAuth.getInstance();
         mUser = mAuth.getCurrentUser();
-        mStore = FirebaseFirestore.getInstance();
+        mOutbox = Outbox.getOutbox(mActivity.getApplication());
 
         // Retrieve the bundle args from the previous fragment.
         mBundle = getArguments();
@@ -280,8 +277,9 @@ public class RegisterFinalFragment extends Fragment {
     }
 
     /**
-     * This will store the user data in the firebase storage.
-     * Passwords are not saved.
+     * This will store the user data in the firebase storage, in the document
+     * of the user. The write is queued in the Outbox, it is retried until
+     * the server has it. Passwords are not saved.
      */
     private void storeUserData() {
         // Create an object to map the keys string to values.
@@ -291,20 +289,8 @@ public class RegisterFinalFragment extends Fragment {
         user.put(USER_EMAIL, email);
 
         // Store the user object to the firebase collection (database).
-        mStore.collection(USER_COLLECTION).add(user).addOnSuccessListener(mActivity,
-                new OnSuccessListener<DocumentReference>() {
-                    @Override
-                    public void onSuccess(DocumentReference documentReference) {
-                        Log.d(TAG, "Document added with ID: " + documentReference);
-                        mProgressBar.setVisibility(View.GONE);
-                    }
-                })
-                .addOnFailureListener(mActivity, new OnFailureListener() {
-                    @Override
-                    public void onFailure(@NonNull Exception e) {
-                        Log.d(TAG, "Failed adding document.", e);
-                    }
-                });
+        mOutbox.set(USER_COLLECTION + "/" + mUser.getUid(), user, true);
+        mProgressBar.setVisibility(View.GONE);
     }
 
     /**
@@ -0,0 +1,96 @@
+package com.example.task.reminder;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import com.example.task.MainActivity;
+import com.example.task.R;
+import com.example.task.arch.Task;
+
+import java.util.List;
+
+/**
+ * Receives the alarm of TaskReminders and notifies the tasks due.
+ * After a reboot or an update of the app, arms the alarm again.
+ */
+public class TaskReminderReceiver extends BroadcastReceiver {
+
+    static final String ACTION_REMIND = "com.example.task.action.REMIND";
+    static final int MAX_NOTIFICATIONS = 5;
+
+    private static final String CHANNEL_ID = "task_reminders";
+    // Notification of the tasks due beyond MAX_NOTIFICATIONS, tasks use their own id.
+    private static final int MORE_NOTIFICATION_ID = 0;
+
+    @Override
+    public void onReceive(final Context context, Intent intent) {
+        final TaskReminders reminders = TaskReminders.getReminders(context);
+        if (!ACTION_REMIND.equals(intent.getAction())) {
+            // Boot completed or app updated, the alarm was cleared.
+            reminders.start();
+            return;
+        }
+        final PendingResult result = goAsync();
+        final long now = System.currentTimeMillis();
+        reminders.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    notifyDue(context.getApplicationContext(), reminders.takeDueTasks(now));
+                } finally {
+                    result.finish();
+                }
+            }
+        });
+    }
+
+    private static void notifyDue(Context context, List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        createChannel(context);
+        NotificationManagerCompat manager = NotificationManagerCompat.from(context);
+        PendingIntent open = PendingIntent.getActivity(context, 0,
+                new Intent(context, MainActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        for (int i = 0; i < tasks.size() && i < MAX_NOTIFICATIONS; i++) {
+            Task task = tasks.get(i);
+            manager.notify(task.getId(), newNotification(context, open)
+                    .setContentTitle(task.getTask())
+                    .setContentText(task.getDetails())
+                    .setWhen(task.getDate().getTime())
+                    .build());
+        }
+        if (tasks.size() > MAX_NOTIFICATIONS) {
+            manager.notify(MORE_NOTIFICATION_ID, newNotification(context, open)
+                    .setContentTitle(context.getString(R.string.more_tasks_due))
+                    .build());
+        }
+    }
+
+    private static NotificationCompat.Builder newNotification(Context context,
+                                                              PendingIntent open) {
+        return new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_round_event_24)
+                .setPriority(NotificationCompat.PRIORITY_DEFAULT)
+                .setCategory(NotificationCompat.CATEGORY_REMINDER)
+                .setShowWhen(true)
+                .setContentIntent(open)
+                .setAutoCancel(true);
+    }
+
+    private static void createChannel(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    context.getString(R.string.reminders), NotificationManager.IMPORTANCE_DEFAULT);
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+}
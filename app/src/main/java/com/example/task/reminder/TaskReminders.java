@@ -0,0 +1,170 @@
+package com.example.task.reminder;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.core.app.AlarmManagerCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.room.InvalidationTracker;
+
+import com.example.task.arch.Task;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskRoomDatabase;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reminds the user of the tasks whose date has come.
+ *
+ * A single alarm is armed, for the next due date. It is read from the
+ * (completed, date, id) index, which is the priority queue of the dates:
+ * finding the next one is a seek in the index, O(log n) whatever the number
+ * of dated tasks. The alarm is re-armed after each transaction changing the
+ * tasks, and left alone when the next due date did not move.
+ *
+ * The tasks due up to the last alarm are remembered by a single time, so no
+ * task is reminded twice and a restart or a reboot loses nothing.
+ */
+public class TaskReminders {
+
+    private static final String STATE_FILE = "task_reminders";
+    private static final String KEY_REMINDED_UNTIL = "reminded_until";
+    private static final String KEY_ARMED_AT = "armed_at";
+
+    // Upper bound of the tasks read for the notifications of one alarm.
+    static final int MAX_NOTIFIED = TaskReminderReceiver.MAX_NOTIFICATIONS + 1;
+
+    private static TaskReminders INSTANCE;
+
+    private final Context mContext;
+    private final TaskDao mDao;
+    private final SharedPreferences mState;
+    private final AlarmManager mAlarmManager;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    public static synchronized TaskReminders getReminders(final Context context) {
+        if (INSTANCE == null) {
+            INSTANCE = new TaskReminders(context.getApplicationContext());
+        }
+        return INSTANCE;
+    }
+
+    private TaskReminders(final Context context) {
+        mContext = context;
+        TaskRoomDatabase database = TaskRoomDatabase.getDatabase(context);
+        mDao = database.taskDao();
+        mState = context.getSharedPreferences(STATE_FILE, Context.MODE_PRIVATE);
+        mAlarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (!mState.contains(KEY_REMINDED_UNTIL)) {
+            // The tasks already due when reminders are first set up are not reminded.
+            mState.edit().putLong(KEY_REMINDED_UNTIL, System.currentTimeMillis()).apply();
+        }
+        database.getInvalidationTracker().addObserver(
+                new InvalidationTracker.Observer("task_table") {
+                    @Override
+                    public void onInvalidated(@NonNull Set<String> tables) {
+                        rearm();
+                    }
+                });
+    }
+
+    /**
+     * Arms the alarm of the next due date, in the background, even if it
+     * was armed before. Meant to be called at startup and after a reboot.
+     */
+    public void start() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                arm(true);
+            }
+        });
+    }
+
+    /**
+     * Forgets the reminders of the signed out user: cancels the alarm and the
+     * notifications shown, the tasks due until now are not reminded.
+     */
+    public void reset() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (TaskReminders.this) {
+                    NotificationManagerCompat.from(mContext).cancelAll();
+                    mState.edit().putLong(KEY_REMINDED_UNTIL, System.currentTimeMillis())
+                            .remove(KEY_ARMED_AT)
+                            .apply();
+                    arm(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * Arms the alarm of the next due date, in the background, if it moved.
+     */
+    public void rearm() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                arm(false);
+            }
+        });
+    }
+
+    void execute(Runnable runnable) {
+        mExecutor.execute(runnable);
+    }
+
+    /**
+     * The tasks due since the last alarm, then arms the next one.
+     * The next call only returns the tasks due after now.
+     *
+     * @param now The current time, in milliseconds.
+     */
+    @WorkerThread
+    synchronized List<Task> takeDueTasks(long now) {
+        long remindedUntil = mState.getLong(KEY_REMINDED_UNTIL, now);
+        List<Task> due = mDao.getTasksDue(remindedUntil, now, MAX_NOTIFIED);
+        mState.edit().putLong(KEY_REMINDED_UNTIL, Math.max(remindedUntil, now)).apply();
+        arm(true);
+        return due;
+    }
+
+    /**
+     * @param force Whether to arm the alarm even if it is already armed
+     *              for the next due date, after a reboot cleared it for instance.
+     */
+    @WorkerThread
+    synchronized void arm(boolean force) {
+        long remindedUntil = mState.getLong(KEY_REMINDED_UNTIL, System.currentTimeMillis());
+        Long next = mDao.getNextDueDate(remindedUntil);
+        long armedAt = next != null ? next : 0;
+        if (!force && armedAt == mState.getLong(KEY_ARMED_AT, 0)) {
+            return;
+        }
+        PendingIntent alarm = alarmIntent();
+        if (next == null) {
+            mAlarmManager.cancel(alarm);
+        } else {
+            AlarmManagerCompat.setAndAllowWhileIdle(mAlarmManager, AlarmManager.RTC_WAKEUP,
+                    next, alarm);
+        }
+        mState.edit().putLong(KEY_ARMED_AT, armedAt).apply();
+    }
+
+    private PendingIntent alarmIntent() {
+        Intent intent = new Intent(mContext, TaskReminderReceiver.class)
+                .setAction(TaskReminderReceiver.ACTION_REMIND);
+        return PendingIntent.getBroadcast(mContext, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
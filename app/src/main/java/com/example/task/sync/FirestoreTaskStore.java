@@ -0,0 +1,168 @@
+package com.example.task.sync;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.task.arch.HybridLogicalClock;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The tasks of a user in Firestore, in user/{uid}/tasks/{uuid}.
+ *
+ * A write sets synced_at to the time of the server. The pull orders the
+ * documents by synced_at then id, so the documents of a batch, which share
+ * the same time, are never skipped between two pulls.
+ *
+ * A document written before the per-field times has only updated_at,
+ * in milliseconds. It stands for the time of every field.
+ */
+public class FirestoreTaskStore implements RemoteTaskStore {
+
+    private static final String USER_COLLECTION = "user";
+    private static final String TASK_COLLECTION = "tasks";
+
+    // Fields of a task document
+    static final String FIELD_TASK = "task";
+    static final String FIELD_DETAILS = "details";
+    static final String FIELD_DATE = "date";
+    static final String FIELD_COMPLETED = "completed";
+    static final String FIELD_COMPLETED_AT = "completed_at";
+    static final String FIELD_TASK_HLC = "task_hlc";
+    static final String FIELD_DETAILS_HLC = "details_hlc";
+    static final String FIELD_DATE_HLC = "date_hlc";
+    static final String FIELD_COMPLETED_HLC = "completed_hlc";
+    static final String FIELD_UPDATED_AT = "updated_at";
+    static final String FIELD_DELETED = "deleted";
+    static final String FIELD_SYNCED_AT = "synced_at";
+
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private final FirebaseFirestore mStore;
+
+    public FirestoreTaskStore(FirebaseFirestore store) {
+        this.mStore = store;
+    }
+
+    @WorkerThread
+    @Override
+    public void push(@NonNull String userId, @NonNull List<RemoteTask> changes)
+            throws IOException {
+        WriteBatch batch = mStore.batch();
+        CollectionReference tasks = tasks(userId);
+        for (RemoteTask change : changes) {
+            batch.set(tasks.document(change.getUuid()), toDocument(change));
+        }
+        await(batch.commit());
+    }
+
+    @NonNull
+    @WorkerThread
+    @Override
+    public List<RemoteTask> pull(@NonNull String userId, @Nullable Cursor after, int limit)
+            throws IOException {
+        Query query = tasks(userId)
+                .orderBy(FIELD_SYNCED_AT)
+                .orderBy(FieldPath.documentId())
+                .limit(limit);
+        if (after != null) {
+            query = query.startAfter(toTimestamp(after.syncedAt), after.uuid);
+        }
+        QuerySnapshot snapshot = await(query.get(Source.SERVER));
+        List<RemoteTask> changes = new ArrayList<>(snapshot.size());
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            changes.add(fromDocument(document));
+        }
+        return changes;
+    }
+
+    private CollectionReference tasks(String userId) {
+        return mStore.collection(USER_COLLECTION).document(userId).collection(TASK_COLLECTION);
+    }
+
+    private static Map<String, Object> toDocument(RemoteTask task) {
+        Map<String, Object> document = new HashMap<>();
+        document.put(FIELD_TASK, task.getTask());
+        document.put(FIELD_DETAILS, task.getDetails());
+        document.put(FIELD_DATE, task.getDate());
+        document.put(FIELD_COMPLETED, task.isCompleted());
+        document.put(FIELD_COMPLETED_AT, task.getCompletedAt());
+        document.put(FIELD_TASK_HLC, task.getTaskHlc());
+        document.put(FIELD_DETAILS_HLC, task.getDetailsHlc());
+        document.put(FIELD_DATE_HLC, task.getDateHlc());
+        document.put(FIELD_COMPLETED_HLC, task.getCompletedHlc());
+        document.put(FIELD_UPDATED_AT, task.getUpdatedAt());
+        document.put(FIELD_DELETED, task.isDeleted());
+        document.put(FIELD_SYNCED_AT, FieldValue.serverTimestamp());
+        return document;
+    }
+
+    private static RemoteTask fromDocument(DocumentSnapshot document) {
+        long updatedAt = getLong(document, FIELD_UPDATED_AT, 0);
+        if (!document.contains(FIELD_TASK_HLC)) {
+            updatedAt = HybridLogicalClock.fromMillis(updatedAt);
+        }
+        RemoteTask task = new RemoteTask(document.getId(),
+                document.getString(FIELD_TASK),
+                document.getString(FIELD_DETAILS),
+                document.getLong(FIELD_DATE),
+                Boolean.TRUE.equals(document.getBoolean(FIELD_COMPLETED)),
+                document.getLong(FIELD_COMPLETED_AT),
+                getLong(document, FIELD_TASK_HLC, updatedAt),
+                getLong(document, FIELD_DETAILS_HLC, updatedAt),
+                getLong(document, FIELD_DATE_HLC, updatedAt),
+                getLong(document, FIELD_COMPLETED_HLC, updatedAt),
+                updatedAt,
+                Boolean.TRUE.equals(document.getBoolean(FIELD_DELETED)));
+        Timestamp syncedAt = document.getTimestamp(FIELD_SYNCED_AT);
+        task.setSyncedAt(syncedAt != null ? toMicros(syncedAt) : 0);
+        return task;
+    }
+
+    private static long getLong(DocumentSnapshot document, String field, long defaultValue) {
+        Long value = document.getLong(field);
+        return value != null ? value : defaultValue;
+    }
+
+    // Firestore keeps times to the microsecond, the cursor keeps them all.
+
+    private static long toMicros(Timestamp timestamp) {
+        return timestamp.getSeconds() * 1000000L + timestamp.getNanoseconds() / 1000;
+    }
+
+    private static Timestamp toTimestamp(long micros) {
+        return new Timestamp(micros / 1000000L, (int) (micros % 1000000L) * 1000);
+    }
+
+    private static <T> T await(com.google.android.gms.tasks.Task<T> task) throws IOException {
+        try {
+            return Tasks.await(task, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
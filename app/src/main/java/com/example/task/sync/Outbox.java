@@ -0,0 +1,223 @@
+package com.example.task.sync;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+
+import com.example.task.arch.OutboxDao;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskRepository;
+import com.example.task.arch.TaskRoomDatabase;
+import com.example.task.arch.TaskWriteExecutor;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent queue of the writes of remote documents.
+ *
+ * A write is first committed to the outbox_table, then OutboxWorker sends
+ * it once the network is available, retrying with a jittered exponential
+ * backoff until the server acknowledges it. A write the server rejects,
+ * or that failed MAX_ATTEMPTS times, is dropped. The tasks themselves are not
+ * queued here, the TaskSyncEngine uploads them from their dirty flag.
+ */
+public class Outbox {
+
+    // Backoff of the retries
+    static final long BASE_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    static final long MAX_BACKOFF_MILLIS = TimeUnit.HOURS.toMillis(6);
+    // About two days of retries, most of them at the largest backoff.
+    static final int MAX_ATTEMPTS = 20;
+
+    private static Outbox INSTANCE;
+
+    private final Application mApplication;
+    private final OutboxDao mDao;
+    private final TaskWriteExecutor mWriteExecutor;
+
+    // Counters
+    private final AtomicLong mSentCount = new AtomicLong();
+    private final AtomicLong mFailureCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private volatile long mLastDrainLatency;
+    private volatile long mMaxDrainLatency;
+
+    public static synchronized Outbox getOutbox(final Application application) {
+        if (INSTANCE == null) {
+            INSTANCE = new Outbox(application);
+        }
+        return INSTANCE;
+    }
+
+    private Outbox(Application application) {
+        mApplication = application;
+        mDao = TaskRoomDatabase.getDatabase(application).outboxDao();
+        mWriteExecutor = TaskRepository.getRepository(application).getWriteExecutor();
+    }
+
+    /**
+     * Queues a write of the document and requests a drain once it is committed.
+     *
+     * @param path   Path of the document, "user/{uid}" for instance.
+     * @param fields Fields of the document. Only plain values are supported:
+     *               strings, numbers, booleans and null.
+     * @param merge  Whether the fields are merged into the document instead of replacing it.
+     */
+    public Future<Void> set(@NonNull final String path, @NonNull Map<String, Object> fields,
+                            final boolean merge) {
+        final String data = new JSONObject(fields).toString();
+        return mWriteExecutor.submit(new TaskWriteExecutor.Write<Void>() {
+            @Override
+            public Void run(@NonNull TaskDao dao) {
+                mDao.enqueue(path, data, merge, System.currentTimeMillis());
+                return null;
+            }
+        }, new TaskWriteExecutor.Callback<Void>() {
+            @Override
+            public void onComplete(@Nullable Void result) {
+                OutboxWorker.requestDrain(mApplication);
+            }
+        });
+    }
+
+    /**
+     * Number of writes not acknowledged yet.
+     */
+    public LiveData<Integer> getPendingCount() {
+        return mDao.getPendingCount();
+    }
+
+    /**
+     * Number of writes acknowledged so far.
+     */
+    public long getSentCount() {
+        return mSentCount.get();
+    }
+
+    /**
+     * Number of failed attempts so far.
+     */
+    public long getFailureCount() {
+        return mFailureCount.get();
+    }
+
+    /**
+     * Number of writes dropped so far, rejected by the server or out of attempts.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Time from the first queued write of a document to its acknowledgement,
+     * for the last acknowledged one, in milliseconds.
+     */
+    public long getLastDrainLatency() {
+        return mLastDrainLatency;
+    }
+
+    /**
+     * Largest drain latency so far, in milliseconds.
+     */
+    public long getMaxDrainLatency() {
+        return mMaxDrainLatency;
+    }
+
+    OutboxDao getDao() {
+        return mDao;
+    }
+
+    TaskWriteExecutor getWriteExecutor() {
+        return mWriteExecutor;
+    }
+
+    void recordSent(long latency) {
+        mSentCount.incrementAndGet();
+        mLastDrainLatency = latency;
+        if (latency > mMaxDrainLatency) {
+            mMaxDrainLatency = latency;
+        }
+    }
+
+    void recordFailure() {
+        mFailureCount.incrementAndGet();
+    }
+
+    void recordDropped() {
+        mDroppedCount.incrementAndGet();
+    }
+
+    /**
+     * Whether the write failed for good, retrying it would fail the same way.
+     * Network errors, timeouts and an unavailable server are worth a retry.
+     */
+    static boolean isPermanent(Throwable error) {
+        if (error instanceof ExecutionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof IllegalArgumentException) {
+            // The queued fields cannot be read back.
+            return true;
+        }
+        if (!(error instanceof FirebaseFirestoreException)) {
+            return false;
+        }
+        switch (((FirebaseFirestoreException) error).getCode()) {
+            case INVALID_ARGUMENT:
+            case PERMISSION_DENIED:
+            case FAILED_PRECONDITION:
+            case OUT_OF_RANGE:
+            case UNIMPLEMENTED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Delay before the next attempt, after the given number of failed ones.
+     *
+     * The delay is drawn between half and all of the exponential backoff,
+     * so the devices that lost the network together do not retry together.
+     */
+    static long retryDelay(int attempts, Random random) {
+        long backoff = MAX_BACKOFF_MILLIS;
+        if (attempts < 32 && BASE_BACKOFF_MILLIS << attempts < MAX_BACKOFF_MILLIS) {
+            backoff = BASE_BACKOFF_MILLIS << attempts;
+        }
+        long half = backoff / 2;
+        return half + (long) (random.nextDouble() * (backoff - half));
+    }
+
+    /**
+     * The fields of a queued write, as written by set().
+     */
+    static Map<String, Object> toFields(String data) {
+        try {
+            JSONObject json = new JSONObject(data);
+            Map<String, Object> fields = new HashMap<>();
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object value = json.get(key);
+                fields.put(key, value == JSONObject.NULL ? null : value);
+            }
+            return fields;
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("The outbox only holds JSON objects.", e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.task.sync;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.task.arch.OutboxDao;
+import com.example.task.arch.OutboxOp;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskWriteExecutor;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends the writes of the Outbox that are due, when the network is available
+ * and the battery is not low.
+ *
+ * A failed write is retried after a jittered backoff of its own, kept in the
+ * outbox. While writes are pending the worker returns Result.retry(), so
+ * WorkManager runs it again after its exponential backoff. A write the server
+ * rejects, or that failed Outbox.MAX_ATTEMPTS times, is dropped.
+ */
+public class OutboxWorker extends Worker {
+
+    private static final String TAG = "OutboxWorker";
+    private static final String WORK_NAME = "outbox-drain";
+
+    private static final int BATCH_SIZE = 100;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private final Random mRandom = new Random();
+
+    public OutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Requests a drain of the writes due, unless one is already pending.
+     */
+    public static void requestDrain(@NonNull Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OutboxWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, Outbox.BASE_BACKOFF_MILLIS,
+                        TimeUnit.MILLISECONDS)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Cancels the pending drain, when the user signs out.
+     */
+    public static void cancel(@NonNull Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Outbox outbox = Outbox.getOutbox((Application) getApplicationContext());
+        OutboxDao dao = outbox.getDao();
+        FirebaseFirestore store = FirebaseFirestore.getInstance();
+        try {
+            List<OutboxOp> due = dao.getDue(System.currentTimeMillis(), BATCH_SIZE);
+            while (!due.isEmpty() && !isStopped()) {
+                for (OutboxOp op : due) {
+                    send(outbox, store, op);
+                }
+                due = dao.getDue(System.currentTimeMillis(), BATCH_SIZE);
+            }
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed updating the outbox.", e.getCause());
+            return Result.retry();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+        // The writes left are in backoff, each of them is sent once due.
+        return dao.getNextAttemptAt() != null ? Result.retry() : Result.success();
+    }
+
+    /**
+     * Sends the write, then removes it from the outbox, drops it if it cannot
+     * succeed, or schedules its next attempt.
+     *
+     * @throws ExecutionException If the outbox could not be updated.
+     */
+    private void send(Outbox outbox, FirebaseFirestore store, final OutboxOp op)
+            throws ExecutionException, InterruptedException {
+        final OutboxDao dao = outbox.getDao();
+        Throwable error = null;
+        try {
+            Tasks.await(op.isMerge()
+                    ? store.document(op.getPath()).set(Outbox.toFields(op.getData()),
+                            SetOptions.merge())
+                    : store.document(op.getPath()).set(Outbox.toFields(op.getData())),
+                    TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException | IllegalArgumentException e) {
+            error = e;
+        }
+
+        if (error == null) {
+            outbox.getWriteExecutor().submit(new TaskWriteExecutor.Write<Integer>() {
+                @Override
+                public Integer run(@NonNull TaskDao taskDao) {
+                    return dao.deleteSent(op.getPath(), op.getRevision());
+                }
+            }).get();
+            outbox.recordSent(System.currentTimeMillis() - op.getCreatedAt());
+        } else if (Outbox.isPermanent(error) || op.getAttempts() + 1 >= Outbox.MAX_ATTEMPTS) {
+            Log.e(TAG, "Dropped " + op.getPath() + " after " + (op.getAttempts() + 1)
+                    + " attempts", error);
+            outbox.getWriteExecutor().submit(new TaskWriteExecutor.Write<Integer>() {
+                @Override
+                public Integer run(@NonNull TaskDao taskDao) {
+                    return dao.drop(op.getPath(), op.getRevision());
+                }
+            }).get();
+            outbox.recordFailure();
+            outbox.recordDropped();
+        } else {
+            Log.w(TAG, "Failed writing " + op.getPath() + ", attempt " + (op.getAttempts() + 1),
+                    error);
+            final long nextAttemptAt = System.currentTimeMillis()
+                    + Outbox.retryDelay(op.getAttempts(), mRandom);
+            outbox.getWriteExecutor().submit(new TaskWriteExecutor.Write<Integer>() {
+                @Override
+                public Integer run(@NonNull TaskDao taskDao) {
+                    return dao.retryLater(op.getPath(), op.getRevision(), nextAttemptAt);
+                }
+            }).get();
+            outbox.recordFailure();
+        }
+    }
+}
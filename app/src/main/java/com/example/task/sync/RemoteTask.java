@@ -0,0 +1,128 @@
+package com.example.task.sync;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.task.arch.Task;
+import com.example.task.arch.TaskTombstone;
+
+/**
+ * A task as stored remotely, one document per task, keyed by the uuid of the task.
+ * A deleted task is kept as a tombstone, so the deletion reaches the other devices.
+ *
+ * Each field comes with the HybridLogicalClock time of its last change,
+ * TaskMerge uses them to merge the fields one by one.
+ */
+public class RemoteTask {
+
+    private final String mUuid;
+    private final String mTask;
+    private final String mDetails;
+    private final Long mDate;
+    private final boolean mCompleted;
+    private final Long mCompletedAt;
+    private final long mTaskHlc;
+    private final long mDetailsHlc;
+    private final long mDateHlc;
+    private final long mCompletedHlc;
+    private final long mUpdatedAt;
+    private final boolean mDeleted;
+
+    // Position of the document in the order of the remote changes,
+    // set by the remote store when the document is written.
+    private long mSyncedAt;
+
+    public RemoteTask(@NonNull String mUuid, String mTask, String mDetails, @Nullable Long mDate,
+                      boolean mCompleted, @Nullable Long mCompletedAt, long mTaskHlc,
+                      long mDetailsHlc, long mDateHlc, long mCompletedHlc, long mUpdatedAt,
+                      boolean mDeleted) {
+        this.mUuid = mUuid;
+        this.mTask = mTask;
+        this.mDetails = mDetails;
+        this.mDate = mDate;
+        this.mCompleted = mCompleted;
+        this.mCompletedAt = mCompletedAt;
+        this.mTaskHlc = mTaskHlc;
+        this.mDetailsHlc = mDetailsHlc;
+        this.mDateHlc = mDateHlc;
+        this.mCompletedHlc = mCompletedHlc;
+        this.mUpdatedAt = mUpdatedAt;
+        this.mDeleted = mDeleted;
+    }
+
+    static RemoteTask fromTask(Task task) {
+        return new RemoteTask(task.getUuid(), task.getTask(), task.getDetails(),
+                task.getDate() != null ? task.getDate().getTime() : null,
+                task.isCompleted(),
+                task.getCompletedAt() != null ? task.getCompletedAt().getTime() : null,
+                task.getTaskHlc(), task.getDetailsHlc(), task.getDateHlc(),
+                task.getCompletedHlc(), task.getUpdatedAt(), false);
+    }
+
+    static RemoteTask fromTombstone(TaskTombstone tombstone) {
+        return new RemoteTask(tombstone.getUuid(), null, null, null, false, null,
+                0, 0, 0, 0, tombstone.getDeletedAt(), true);
+    }
+
+    @NonNull
+    public String getUuid() {
+        return mUuid;
+    }
+
+    public String getTask() {
+        return mTask;
+    }
+
+    public String getDetails() {
+        return mDetails;
+    }
+
+    @Nullable
+    public Long getDate() {
+        return mDate;
+    }
+
+    public boolean isCompleted() {
+        return mCompleted;
+    }
+
+    @Nullable
+    public Long getCompletedAt() {
+        return mCompletedAt;
+    }
+
+    public long getTaskHlc() {
+        return mTaskHlc;
+    }
+
+    public long getDetailsHlc() {
+        return mDetailsHlc;
+    }
+
+    public long getDateHlc() {
+        return mDateHlc;
+    }
+
+    public long getCompletedHlc() {
+        return mCompletedHlc;
+    }
+
+    /**
+     * The time of the last change of the task, or of its deletion.
+     */
+    public long getUpdatedAt() {
+        return mUpdatedAt;
+    }
+
+    public boolean isDeleted() {
+        return mDeleted;
+    }
+
+    public long getSyncedAt() {
+        return mSyncedAt;
+    }
+
+    public void setSyncedAt(long syncedAt) {
+        this.mSyncedAt = syncedAt;
+    }
+}
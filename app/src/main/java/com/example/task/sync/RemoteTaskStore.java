@@ -0,0 +1,55 @@
+package com.example.task.sync;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Remote copy of the tasks of each user. The calls block, they run on the sync thread.
+ *
+ * Every write gives the document a new position in the order of the changes,
+ * so the changes made since the last pull are read with a range query.
+ */
+public interface RemoteTaskStore {
+
+    /**
+     * Writes the given tasks and tombstones, all of them or none.
+     *
+     * @param changes At most MAX_BATCH_SIZE tasks.
+     */
+    @WorkerThread
+    void push(@NonNull String userId, @NonNull List<RemoteTask> changes) throws IOException;
+
+    /**
+     * Reads the tasks written after the given one, in the order they were written.
+     *
+     * @param after The last task of the previous pull, null to read from the start.
+     * @param limit The maximum number of tasks to read.
+     */
+    @NonNull
+    @WorkerThread
+    List<RemoteTask> pull(@NonNull String userId, @Nullable Cursor after, int limit)
+            throws IOException;
+
+    /**
+     * Number of writes a push can hold, the limit of a Firestore batch.
+     */
+    int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Position of a task in the order of the remote changes.
+     */
+    class Cursor {
+
+        public final long syncedAt;
+        public final String uuid;
+
+        public Cursor(long syncedAt, @NonNull String uuid) {
+            this.syncedAt = syncedAt;
+            this.uuid = uuid;
+        }
+    }
+}
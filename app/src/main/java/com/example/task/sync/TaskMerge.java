@@ -0,0 +1,163 @@
+package com.example.task.sync;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.task.arch.Task;
+
+import java.util.Date;
+
+/**
+ * Merge of a remote task into the local one, field by field.
+ *
+ * Each field is a last-writer-wins register keyed by the HybridLogicalClock
+ * time of its last change. When two changes have the same time the greater
+ * value wins, so the merge is commutative, associative and idempotent: every
+ * device ends with the same task whatever the order the changes arrive in.
+ *
+ * The functions are pure apart from apply(), and compare the fields in
+ * place. The fields are reported as bit masks, nothing is allocated to
+ * resolve a conflict.
+ */
+public final class TaskMerge {
+
+    // Fields of a task
+    public static final int TASK = 1;
+    public static final int DETAILS = 1 << 1;
+    public static final int DATE = 1 << 2;
+    public static final int COMPLETED = 1 << 3;
+    public static final int ALL = TASK | DETAILS | DATE | COMPLETED;
+
+    private TaskMerge() {
+        // Static helpers only.
+    }
+
+    /**
+     * The fields whose remote value wins over the local one.
+     */
+    public static int remoteFields(@NonNull Task local, @NonNull RemoteTask remote) {
+        int fields = 0;
+        if (wins(remote.getTaskHlc(), local.getTaskHlc(),
+                compare(remote.getTask(), local.getTask()))) {
+            fields |= TASK;
+        }
+        if (wins(remote.getDetailsHlc(), local.getDetailsHlc(),
+                compare(remote.getDetails(), local.getDetails()))) {
+            fields |= DETAILS;
+        }
+        if (wins(remote.getDateHlc(), local.getDateHlc(),
+                compare(remote.getDate(), local.getDate()))) {
+            fields |= DATE;
+        }
+        if (wins(remote.getCompletedHlc(), local.getCompletedHlc(),
+                compareCompletion(remote.isCompleted(), remote.getCompletedAt(),
+                        local.isCompleted(), local.getCompletedAt()))) {
+            fields |= COMPLETED;
+        }
+        return fields;
+    }
+
+    /**
+     * The fields whose local value wins over the remote one. The remote
+     * task misses these changes, the local task has to be uploaded.
+     */
+    public static int localFields(@NonNull Task local, @NonNull RemoteTask remote) {
+        int fields = 0;
+        if (wins(local.getTaskHlc(), remote.getTaskHlc(),
+                -compare(remote.getTask(), local.getTask()))) {
+            fields |= TASK;
+        }
+        if (wins(local.getDetailsHlc(), remote.getDetailsHlc(),
+                -compare(remote.getDetails(), local.getDetails()))) {
+            fields |= DETAILS;
+        }
+        if (wins(local.getDateHlc(), remote.getDateHlc(),
+                -compare(remote.getDate(), local.getDate()))) {
+            fields |= DATE;
+        }
+        if (wins(local.getCompletedHlc(), remote.getCompletedHlc(),
+                -compareCompletion(remote.isCompleted(), remote.getCompletedAt(),
+                        local.isCompleted(), local.getCompletedAt()))) {
+            fields |= COMPLETED;
+        }
+        return fields;
+    }
+
+    /**
+     * Whether a remote deletion happened after every change of the local task.
+     * A task edited since it was deleted elsewhere is kept.
+     */
+    public static boolean deletionWins(@NonNull Task local, @NonNull RemoteTask deletion) {
+        return deletion.getUpdatedAt() > lastChange(local);
+    }
+
+    /**
+     * Copies the given fields of the remote task, with their times, to the local one.
+     */
+    public static void apply(@NonNull Task local, @NonNull RemoteTask remote, int fields) {
+        if ((fields & TASK) != 0) {
+            local.setTask(remote.getTask());
+            local.setTaskHlc(remote.getTaskHlc());
+        }
+        if ((fields & DETAILS) != 0) {
+            local.setDetails(remote.getDetails());
+            local.setDetailsHlc(remote.getDetailsHlc());
+        }
+        if ((fields & DATE) != 0) {
+            local.setDate(remote.getDate() != null ? new Date(remote.getDate()) : null);
+            local.setDateHlc(remote.getDateHlc());
+        }
+        if ((fields & COMPLETED) != 0) {
+            local.setCompleted(remote.isCompleted());
+            local.setCompletedAt(remote.getCompletedAt() != null
+                    ? new Date(remote.getCompletedAt()) : null);
+            local.setCompletedHlc(remote.getCompletedHlc());
+        }
+        if ((fields & (TASK | DETAILS | DATE)) != 0) {
+            local.setContentHash(Task.computeContentHash(local.getTask(), local.getDetails(),
+                    local.getDate()));
+        }
+        local.setUpdatedAt(Math.max(local.getUpdatedAt(), lastChange(local)));
+    }
+
+    /**
+     * The time of the last change of any field of the task.
+     */
+    public static long lastChange(@NonNull Task task) {
+        return Math.max(Math.max(task.getTaskHlc(), task.getDetailsHlc()),
+                Math.max(task.getDateHlc(), task.getCompletedHlc()));
+    }
+
+    /**
+     * Whether the value with the time hlc wins over the one with otherHlc.
+     *
+     * @param compared The comparison of the value with the other one.
+     */
+    static boolean wins(long hlc, long otherHlc, int compared) {
+        return hlc > otherHlc || (hlc == otherHlc && compared > 0);
+    }
+
+    // Comparisons of the values, null first.
+
+    static int compare(@Nullable String a, @Nullable String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    static int compare(@Nullable Long a, @Nullable Date b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return Long.compare(a, b.getTime());
+    }
+
+    static int compareCompletion(boolean completedA, @Nullable Long atA,
+                                 boolean completedB, @Nullable Date atB) {
+        if (completedA != completedB) {
+            return completedA ? 1 : -1;
+        }
+        return compare(atA, atB);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.task.sync;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.task.arch.HybridLogicalClock;
+import com.example.task.arch.Task;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskTombstone;
+import com.example.task.arch.TaskWriteExecutor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Mirrors the tasks of a user between the local database and a RemoteTaskStore.
+ *
+ * The push uploads the dirty tasks and the tombstones, a batch at a time, and clears
+ * them once the batch is written. The pull reads the remote changes made since the
+ * last pull, from a cursor kept in the sync state, and applies them through the
+ * TaskWriteExecutor. Both only touch what changed, whatever the number of tasks.
+ *
+ * The remote changes are merged field by field by TaskMerge, a page at a time.
+ */
+public class TaskSyncEngine {
+
+    private static final String KEY_CURSOR_SYNCED_AT = "cursor_synced_at_";
+    private static final String KEY_CURSOR_UUID = "cursor_uuid_";
+
+    private final TaskDao mDao;
+    private final TaskWriteExecutor mWriteExecutor;
+    private final HybridLogicalClock mClock;
+    private final RemoteTaskStore mStore;
+    private final SharedPreferences mState;
+
+    /**
+     * @param clock The clock of the local changes, it observes the remote ones.
+     * @param state Where the pull cursor of each user is kept.
+     */
+    public TaskSyncEngine(@NonNull TaskDao dao, @NonNull TaskWriteExecutor writeExecutor,
+                          @NonNull HybridLogicalClock clock, @NonNull RemoteTaskStore store,
+                          @NonNull SharedPreferences state) {
+        this.mDao = dao;
+        this.mWriteExecutor = writeExecutor;
+        this.mClock = clock;
+        this.mStore = store;
+        this.mState = state;
+    }
+
+    /**
+     * Uploads the local changes, then applies the remote ones.
+     */
+    @WorkerThread
+    public void sync(@NonNull String userId) throws IOException {
+        push(userId);
+        pull(userId);
+    }
+
+    /**
+     * Uploads the local changes.
+     *
+     * @return The number of tasks and tombstones uploaded.
+     */
+    @WorkerThread
+    public int push(@NonNull String userId) throws IOException {
+        int pushed = 0;
+        while (true) {
+            final List<Task> tasks = mDao.getDirtyTasks(RemoteTaskStore.MAX_BATCH_SIZE);
+            final List<TaskTombstone> tombstones =
+                    mDao.getTombstones(RemoteTaskStore.MAX_BATCH_SIZE - tasks.size());
+            if (tasks.isEmpty() && tombstones.isEmpty()) {
+                return pushed;
+            }
+
+            List<RemoteTask> changes = new ArrayList<>(tasks.size() + tombstones.size());
+            for (Task task : tasks) {
+                changes.add(RemoteTask.fromTask(task));
+            }
+            final List<String> deleted = new ArrayList<>(tombstones.size());
+            for (TaskTombstone tombstone : tombstones) {
+                changes.add(RemoteTask.fromTombstone(tombstone));
+                deleted.add(tombstone.getUuid());
+            }
+            mStore.push(userId, changes);
+
+            await(mWriteExecutor.submit(new TaskWriteExecutor.Write<Void>() {
+                @Override
+                public Void run(@NonNull TaskDao dao) {
+                    for (Task task : tasks) {
+                        dao.markSynced(task.getId(), task.getUpdatedAt());
+                    }
+                    if (!deleted.isEmpty()) {
+                        dao.deleteTombstones(deleted);
+                    }
+                    return null;
+                }
+            }));
+            pushed += changes.size();
+        }
+    }
+
+    /**
+     * Applies the remote changes made since the last pull.
+     *
+     * @return The number of remote changes read.
+     */
+    @WorkerThread
+    public int pull(@NonNull String userId) throws IOException {
+        int pulled = 0;
+        RemoteTaskStore.Cursor cursor = readCursor(userId);
+        while (true) {
+            final List<RemoteTask> changes =
+                    mStore.pull(userId, cursor, RemoteTaskStore.MAX_BATCH_SIZE);
+            if (changes.isEmpty()) {
+                return pulled;
+            }
+            for (RemoteTask change : changes) {
+                mClock.observe(change.getUpdatedAt());
+            }
+            await(mWriteExecutor.submit(new TaskWriteExecutor.Write<Void>() {
+                @Override
+                public Void run(@NonNull TaskDao dao) {
+                    apply(dao, changes);
+                    return null;
+                }
+            }));
+
+            // Only move the cursor once the changes are committed.
+            RemoteTask last = changes.get(changes.size() - 1);
+            cursor = new RemoteTaskStore.Cursor(last.getSyncedAt(), last.getUuid());
+            writeCursor(userId, cursor);
+            pulled += changes.size();
+            if (changes.size() < RemoteTaskStore.MAX_BATCH_SIZE) {
+                return pulled;
+            }
+        }
+    }
+
+    /**
+     * Merges a page of remote changes into the local tasks. The local tasks are
+     * loaded with one query and written back with one statement per kind of write.
+     * A local task keeps its dirty flag only if it has changes the remote one misses.
+     * Our own changes come back identical and leave the tasks as they are.
+     */
+    static void apply(TaskDao dao, List<RemoteTask> changes) {
+        List<String> uuids = new ArrayList<>(changes.size());
+        for (RemoteTask change : changes) {
+            uuids.add(change.getUuid());
+        }
+        Map<String, Task> locals = new HashMap<>();
+        for (Task task : dao.getTasksByUuids(uuids)) {
+            locals.put(task.getUuid(), task);
+        }
+
+        List<Task> inserts = new ArrayList<>();
+        List<Task> updates = new ArrayList<>();
+        for (RemoteTask change : changes) {
+            Task local = locals.get(change.getUuid());
+            if (change.isDeleted()) {
+                if (local == null) {
+                    continue;
+                }
+                if (TaskMerge.deletionWins(local, change)) {
+                    dao.deleteSynced(local);
+                } else if (!local.isDirty()) {
+                    // Edited after the deletion, upload it again.
+                    local.setDirty(true);
+                    updates.add(local);
+                }
+            } else if (local == null) {
+                Task task = new Task();
+                task.setUuid(change.getUuid());
+                TaskMerge.apply(task, change, TaskMerge.ALL);
+                inserts.add(task);
+            } else {
+                int remoteFields = TaskMerge.remoteFields(local, change);
+                boolean dirty = TaskMerge.localFields(local, change) != 0;
+                if (remoteFields != 0 || dirty != local.isDirty()) {
+                    TaskMerge.apply(local, change, remoteFields);
+                    local.setDirty(dirty);
+                    updates.add(local);
+                }
+            }
+        }
+        if (!inserts.isEmpty()) {
+            dao.insert(inserts);
+        }
+        if (!updates.isEmpty()) {
+            dao.update(updates);
+        }
+    }
+
+    @Nullable
+    private RemoteTaskStore.Cursor readCursor(String userId) {
+        String uuid = mState.getString(KEY_CURSOR_UUID + userId, null);
+        if (uuid == null) {
+            return null;
+        }
+        return new RemoteTaskStore.Cursor(mState.getLong(KEY_CURSOR_SYNCED_AT + userId, 0), uuid);
+    }
+
+    private void writeCursor(String userId, RemoteTaskStore.Cursor cursor) {
+        mState.edit()
+                .putLong(KEY_CURSOR_SYNCED_AT + userId, cursor.syncedAt)
+                .putString(KEY_CURSOR_UUID + userId, cursor.uuid)
+                .apply();
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed writing the synced tasks.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.task.sync;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskRepository;
+import com.example.task.arch.TaskRoomDatabase;
+import com.example.task.reminder.TaskReminders;
+import com.example.task.widget.TaskWidgetUpdater;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the TaskSyncEngine for the signed in user, when the network is available.
+ *
+ * A sync is requested whenever a transaction leaves local changes to upload,
+ * and once an hour to pick up the changes made on other devices.
+ */
+public class TaskSyncWorker extends Worker {
+
+    private static final String TAG = "TaskSyncWorker";
+    private static final String WORK_NAME = "task-sync";
+    private static final String PERIODIC_WORK_NAME = "task-sync-periodic";
+    private static final String STATE_FILE = "task_sync_state";
+
+    private static final long PERIODIC_SYNC_HOURS = 1;
+    private static final long BACKOFF_SECONDS = 30;
+
+    private static boolean sStarted;
+
+    public TaskSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Starts syncing the tasks: now, after each local change, and periodically.
+     * Meant to be called once the user is signed in.
+     */
+    public static synchronized void start(@NonNull Context context) {
+        final Context appContext = context.getApplicationContext();
+        if (!sStarted) {
+            sStarted = true;
+            final TaskDao dao = TaskRoomDatabase.getDatabase(appContext).taskDao();
+            TaskRoomDatabase.getDatabase(appContext).getInvalidationTracker().addObserver(
+                    new InvalidationTracker.Observer("task_table", "task_tombstone") {
+                        @Override
+                        public void onInvalidated(@NonNull Set<String> tables) {
+                            // Called on a background thread, after the commit. The sync
+                            // itself invalidates the tables, it leaves no change to upload.
+                            if (dao.hasLocalChanges()) {
+                                requestSync(appContext);
+                            }
+                        }
+                    });
+        }
+
+        PeriodicWorkRequest periodic = new PeriodicWorkRequest.Builder(TaskSyncWorker.class,
+                PERIODIC_SYNC_HOURS, TimeUnit.HOURS)
+                .setConstraints(networkConstraints())
+                .build();
+        WorkManager.getInstance(appContext).enqueueUniquePeriodicWork(PERIODIC_WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP, periodic);
+        requestSync(appContext);
+    }
+
+    /**
+     * Stops syncing and forgets the sync cursors, when the user signs out.
+     */
+    public static void stop(@NonNull Context context) {
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.cancelUniqueWork(WORK_NAME);
+        workManager.cancelUniqueWork(PERIODIC_WORK_NAME);
+        context.getSharedPreferences(STATE_FILE, Context.MODE_PRIVATE).edit().clear().apply();
+    }
+
+    /**
+     * Requests a sync, unless one is already pending.
+     */
+    public static void requestSync(@NonNull Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(TaskSyncWorker.class)
+                .setConstraints(networkConstraints())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME,
+                ExistingWorkPolicy.KEEP, request);
+    }
+
+    private static Constraints networkConstraints() {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            return Result.success(); // Nothing to sync until a user signs in.
+        }
+        Application application = (Application) getApplicationContext();
+        // The tasks pulled move the reminders and the widgets too, the app may not be running.
+        TaskReminders.getReminders(application);
+        TaskWidgetUpdater.getUpdater(application);
+        TaskDao dao = TaskRoomDatabase.getDatabase(application).taskDao();
+        TaskRepository repository = TaskRepository.getRepository(application);
+        TaskSyncEngine engine = new TaskSyncEngine(dao, repository.getWriteExecutor(),
+                repository.getClock(), new FirestoreTaskStore(FirebaseFirestore.getInstance()),
+                application.getSharedPreferences(STATE_FILE, Context.MODE_PRIVATE));
+        try {
+            engine.sync(user.getUid());
+            // The changes made during the sync, their request was dropped as this one ran.
+            while (dao.hasLocalChanges() && !isStopped()) {
+                engine.push(user.getUid());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Sync failed, it is retried later.", e);
+            return Result.retry();
+        }
+        return Result.success();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.task.widget;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.widget.RemoteViews;
+
+import com.example.task.MainActivity;
+import com.example.task.R;
+
+/**
+ * Home screen widget listing the next tasks due.
+ * The rows are served by TaskWidgetService and refreshed by TaskWidgetUpdater.
+ */
+public class TaskWidgetProvider extends AppWidgetProvider {
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        TaskWidgetUpdater.getUpdater(context);
+        PendingIntent open = PendingIntent.getActivity(context, 0,
+                new Intent(context, MainActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        for (int appWidgetId : appWidgetIds) {
+            Intent adapter = new Intent(context, TaskWidgetService.class)
+                    .putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+            // Widgets with their own extras need their own intent.
+            adapter.setData(Uri.parse(adapter.toUri(Intent.URI_INTENT_SCHEME)));
+
+            RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_tasks);
+            views.setRemoteAdapter(R.id.widget_list, adapter);
+            views.setEmptyView(R.id.widget_list, R.id.widget_empty);
+            views.setOnClickPendingIntent(R.id.widget_title, open);
+            views.setPendingIntentTemplate(R.id.widget_list, open);
+            appWidgetManager.updateAppWidget(appWidgetId, views);
+        }
+    }
+}
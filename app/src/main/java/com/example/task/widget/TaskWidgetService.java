@@ -0,0 +1,88 @@
+package com.example.task.widget;
+
+import android.content.Context;
+import android.content.Intent;
+import android.widget.RemoteViews;
+import android.widget.RemoteViewsService;
+
+import com.example.task.R;
+import com.example.task.TaskDateFormatter;
+import com.example.task.arch.TaskSummary;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Serves the rows of the task widgets from the window of TaskWidgetUpdater.
+ */
+public class TaskWidgetService extends RemoteViewsService {
+
+    @Override
+    public RemoteViewsFactory onGetViewFactory(Intent intent) {
+        return new TaskRowsFactory(getApplicationContext());
+    }
+
+    private static class TaskRowsFactory implements RemoteViewsFactory {
+
+        private final Context mContext;
+        private final TaskWidgetUpdater mUpdater;
+        private final TaskDateFormatter mDateFormatter;
+        private List<TaskSummary> mTasks = Collections.emptyList();
+
+        TaskRowsFactory(Context context) {
+            mContext = context;
+            mUpdater = TaskWidgetUpdater.getUpdater(context);
+            mDateFormatter = TaskDateFormatter.getInstance(context);
+        }
+
+        @Override
+        public void onCreate() {
+        }
+
+        @Override
+        public void onDataSetChanged() {
+            // Called on a binder thread, the query may run here.
+            mTasks = mUpdater.getWindow();
+        }
+
+        @Override
+        public void onDestroy() {
+        }
+
+        @Override
+        public int getCount() {
+            return mTasks.size();
+        }
+
+        @Override
+        public RemoteViews getViewAt(int position) {
+            TaskSummary task = mTasks.get(position);
+            RemoteViews row = new RemoteViews(mContext.getPackageName(),
+                    R.layout.widget_task_item);
+            row.setTextViewText(R.id.widget_task, task.task);
+            row.setTextViewText(R.id.widget_date, mDateFormatter.format(task.id, task.date));
+            row.setOnClickFillInIntent(R.id.widget_item, new Intent());
+            return row;
+        }
+
+        @Override
+        public RemoteViews getLoadingView() {
+            return null;
+        }
+
+        @Override
+        public int getViewTypeCount() {
+            return 1;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return mTasks.get(position).id;
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+    }
+}
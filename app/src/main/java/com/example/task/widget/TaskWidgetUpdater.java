@@ -0,0 +1,92 @@
+package com.example.task.widget;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.room.InvalidationTracker;
+
+import com.example.task.R;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskRoomDatabase;
+import com.example.task.arch.TaskSummary;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the rows of the task widgets, the first WINDOW_SIZE dated tasks.
+ *
+ * After each transaction changing task_table, the window is read again with
+ * the TaskSummary projection, a seek in the date index that reads no details.
+ * The widgets are only refreshed when the window changed: a write to a task
+ * out of the window, or to its details, costs this query and nothing else.
+ */
+public class TaskWidgetUpdater {
+
+    static final int WINDOW_SIZE = 20;
+
+    private static TaskWidgetUpdater INSTANCE;
+
+    private final Context mContext;
+    private final TaskDao mDao;
+    private final AppWidgetManager mWidgetManager;
+    private final ComponentName mProvider;
+    private List<TaskSummary> mWindow;
+
+    public static synchronized TaskWidgetUpdater getUpdater(final Context context) {
+        if (INSTANCE == null) {
+            INSTANCE = new TaskWidgetUpdater(context.getApplicationContext());
+        }
+        return INSTANCE;
+    }
+
+    private TaskWidgetUpdater(Context context) {
+        mContext = context;
+        TaskRoomDatabase database = TaskRoomDatabase.getDatabase(context);
+        mDao = database.taskDao();
+        mWidgetManager = AppWidgetManager.getInstance(context);
+        mProvider = new ComponentName(context, TaskWidgetProvider.class);
+        database.getInvalidationTracker().addObserver(
+                new InvalidationTracker.Observer("task_table") {
+                    @Override
+                    public void onInvalidated(@NonNull Set<String> tables) {
+                        // Called on a background thread, after the commit.
+                        refresh();
+                    }
+                });
+    }
+
+    /**
+     * The rows of the widgets, read if they were not yet.
+     */
+    @WorkerThread
+    synchronized List<TaskSummary> getWindow() {
+        if (mWindow == null) {
+            mWindow = mDao.getDueSummaries(WINDOW_SIZE);
+        }
+        return mWindow;
+    }
+
+    @WorkerThread
+    private void refresh() {
+        int[] ids = mWidgetManager.getAppWidgetIds(mProvider);
+        if (ids.length == 0) {
+            // Not kept up to date without widgets, read again by the next one added.
+            synchronized (this) {
+                mWindow = null;
+            }
+            return;
+        }
+        List<TaskSummary> window = mDao.getDueSummaries(WINDOW_SIZE);
+        synchronized (this) {
+            if (window.equals(mWindow)) {
+                return;
+            }
+            mWindow = window;
+        }
+        mWidgetManager.notifyAppWidgetViewDataChanged(ids, R.id.widget_list);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.task.arch;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * Encodes snapshots of the list and decodes them, valid or damaged.
+ */
+public class TaskSnapshotTest {
+
+    @Test
+    public void decode_ofEncode_isTheSameTasks() {
+        List<TaskListItem> items = new ArrayList<>();
+        items.add(new TaskListItem(1, "Undated", null, null, 17));
+        items.add(new TaskListItem(2, "Déjà vu ✓", "Details\nover lines",
+                new Date(1600000000000L), -5));
+        items.add(new TaskListItem(7, "", "", new Date(0), 0));
+
+        List<TaskListItem> decoded =
+                TaskSnapshot.decode(ByteBuffer.wrap(TaskSnapshot.encode(items)));
+
+        assertNotNull(decoded);
+        assertEquals(items.size(), decoded.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).id, decoded.get(i).id);
+            assertTrue(items.get(i).hasSameContent(decoded.get(i)));
+        }
+    }
+
+    @Test
+    public void decode_ofNoTasks_isEmpty() {
+        List<TaskListItem> decoded = TaskSnapshot.decode(
+                ByteBuffer.wrap(TaskSnapshot.encode(Collections.<TaskListItem>emptyList())));
+        assertNotNull(decoded);
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    public void decode_ofAChangedByte_isNull() {
+        byte[] snapshot = TaskSnapshot.encode(someItems());
+        for (int i = 0; i < snapshot.length; i++) {
+            byte[] corrupt = snapshot.clone();
+            corrupt[i] ^= 0x10;
+            assertNull(TaskSnapshot.decode(ByteBuffer.wrap(corrupt)));
+        }
+    }
+
+    @Test
+    public void decode_ofACutSnapshot_isNull() {
+        byte[] snapshot = TaskSnapshot.encode(someItems());
+        for (int length = 0; length < snapshot.length; length++) {
+            assertNull(TaskSnapshot.decode(ByteBuffer.wrap(Arrays.copyOf(snapshot, length))));
+        }
+    }
+
+    @Test
+    public void decode_ofAnotherVersion_isNull() {
+        byte[] snapshot = TaskSnapshot.encode(someItems());
+        // Version 1, with a valid checksum.
+        ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+        buffer.putInt(4, 1);
+        CRC32 crc = new CRC32();
+        crc.update(snapshot, 0, snapshot.length - 8);
+        buffer.putLong(snapshot.length - 8, crc.getValue());
+
+        assertNull(TaskSnapshot.decode(ByteBuffer.wrap(snapshot)));
+    }
+
+    private static List<TaskListItem> someItems() {
+        List<TaskListItem> items = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            items.add(new TaskListItem(i, "Task " + i, i % 2 == 0 ? "Details " + i : null,
+                    i % 3 == 0 ? null : new Date(i * 60000L), i * 31));
+        }
+        return items;
+    }
+}
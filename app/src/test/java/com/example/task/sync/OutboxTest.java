@@ -0,0 +1,62 @@
+package com.example.task.sync;
+
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bounds of the jittered backoff of the outbox retries, and the errors
+ * that are not retried.
+ */
+public class OutboxTest {
+
+    @Test
+    public void retryDelay_staysWithinTheBackoff() {
+        Random random = new Random(1);
+        for (int attempts = 0; attempts < 64; attempts++) {
+            long backoff = Math.min(Outbox.MAX_BACKOFF_MILLIS,
+                    attempts < 20 ? Outbox.BASE_BACKOFF_MILLIS << attempts : Long.MAX_VALUE);
+            for (int i = 0; i < 100; i++) {
+                long delay = Outbox.retryDelay(attempts, random);
+                assertTrue(delay >= backoff / 2);
+                assertTrue(delay <= backoff);
+            }
+        }
+    }
+
+    @Test
+    public void retryDelay_spreadsTheRetries() {
+        Random random = new Random(2);
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 1000; i++) {
+            long delay = Outbox.retryDelay(3, random);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        // Retries of the same attempt are spread over most of the window.
+        long window = (Outbox.BASE_BACKOFF_MILLIS << 3) / 2;
+        assertTrue(max - min > window * 9 / 10);
+    }
+
+    @Test
+    public void isPermanent_onlyForErrorsARetryCannotFix() {
+        assertTrue(Outbox.isPermanent(new ExecutionException(new FirebaseFirestoreException(
+                "Denied", FirebaseFirestoreException.Code.PERMISSION_DENIED))));
+        assertTrue(Outbox.isPermanent(new FirebaseFirestoreException(
+                "Invalid", FirebaseFirestoreException.Code.INVALID_ARGUMENT)));
+        assertTrue(Outbox.isPermanent(new IllegalArgumentException("Not JSON")));
+
+        assertFalse(Outbox.isPermanent(new ExecutionException(new FirebaseFirestoreException(
+                "Offline", FirebaseFirestoreException.Code.UNAVAILABLE))));
+        assertFalse(Outbox.isPermanent(new FirebaseFirestoreException(
+                "Slow", FirebaseFirestoreException.Code.DEADLINE_EXCEEDED)));
+        assertFalse(Outbox.isPermanent(new TimeoutException()));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.task.sync;
+
+import com.example.task.arch.Task;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Applies random edits of a task made on several devices in random orders,
+ * every order has to end with the same task.
+ */
+public class TaskMergeTest {
+
+    private static final int ROUNDS = 500;
+    private static final int REPLICAS = 3;
+    private static final int EDITS = 12;
+
+    @Test
+    public void merge_convergesInAnyOrder() {
+        Random random = new Random(42);
+        for (int round = 0; round < ROUNDS; round++) {
+            List<RemoteTask> changes = randomChanges(random);
+
+            Task expected = merged(changes);
+            for (int i = 0; i < 5; i++) {
+                Collections.shuffle(changes, random);
+                assertSameTask(expected, merged(changes));
+            }
+        }
+    }
+
+    @Test
+    public void merge_isIdempotent() {
+        Random random = new Random(7);
+        for (int round = 0; round < ROUNDS; round++) {
+            List<RemoteTask> changes = randomChanges(random);
+            Task task = merged(changes);
+            RemoteTask snapshot = RemoteTask.fromTask(task);
+
+            for (RemoteTask change : changes) {
+                assertEquals(0, TaskMerge.remoteFields(task, change));
+            }
+            merge(task, snapshot);
+            assertSameTask(merged(changes), task);
+        }
+    }
+
+    @Test
+    public void merge_keepsConcurrentEditsOfDifferentFields() {
+        Task local = new Task("Task", "Details", null);
+        local.markChanged(10);
+        RemoteTask remote = RemoteTask.fromTask(local);
+
+        local.setTask("Task on A");
+        local.setTaskHlc(20);
+        Task other = new Task();
+        other.setUuid(local.getUuid());
+        merge(other, remote);
+        other.setDetails("Details on B");
+        other.setDetailsHlc(21);
+
+        assertEquals(TaskMerge.DETAILS, TaskMerge.remoteFields(local, RemoteTask.fromTask(other)));
+        assertEquals(TaskMerge.TASK, TaskMerge.localFields(local, RemoteTask.fromTask(other)));
+        merge(local, RemoteTask.fromTask(other));
+        assertEquals("Task on A", local.getTask());
+        assertEquals("Details on B", local.getDetails());
+        assertEquals(21, local.getUpdatedAt());
+    }
+
+    /**
+     * Snapshots of the task taken on each device after each of its edits.
+     * The times are drawn from a small range so that some of them are equal.
+     */
+    private static List<RemoteTask> randomChanges(Random random) {
+        String uuid = "task-" + random.nextInt();
+        List<Task> replicas = new ArrayList<>(REPLICAS);
+        for (int i = 0; i < REPLICAS; i++) {
+            Task replica = new Task();
+            replica.setUuid(uuid);
+            replicas.add(replica);
+        }
+        List<RemoteTask> changes = new ArrayList<>();
+        for (int i = 0; i < EDITS; i++) {
+            Task replica = replicas.get(random.nextInt(REPLICAS));
+            // Sometimes the device has seen a change of another one first.
+            if (!changes.isEmpty() && random.nextBoolean()) {
+                merge(replica, changes.get(random.nextInt(changes.size())));
+            }
+            long hlc = 1 + random.nextInt(EDITS);
+            switch (random.nextInt(4)) {
+                case 0:
+                    replica.setTask("Task " + random.nextInt(3));
+                    replica.setTaskHlc(Math.max(hlc, replica.getTaskHlc()));
+                    break;
+                case 1:
+                    replica.setDetails(random.nextBoolean() ? null : "Details " + random.nextInt(3));
+                    replica.setDetailsHlc(Math.max(hlc, replica.getDetailsHlc()));
+                    break;
+                case 2:
+                    replica.setDate(random.nextBoolean() ? null : new Date(random.nextInt(3)));
+                    replica.setDateHlc(Math.max(hlc, replica.getDateHlc()));
+                    break;
+                default:
+                    boolean completed = random.nextBoolean();
+                    replica.setCompleted(completed);
+                    replica.setCompletedAt(completed ? new Date(random.nextInt(3)) : null);
+                    replica.setCompletedHlc(Math.max(hlc, replica.getCompletedHlc()));
+                    break;
+            }
+            changes.add(RemoteTask.fromTask(replica));
+        }
+        return changes;
+    }
+
+    private static Task merged(List<RemoteTask> changes) {
+        Task task = new Task();
+        task.setUuid(changes.get(0).getUuid());
+        for (RemoteTask change : changes) {
+            merge(task, change);
+        }
+        return task;
+    }
+
+    private static void merge(Task local, RemoteTask remote) {
+        TaskMerge.apply(local, remote, TaskMerge.remoteFields(local, remote));
+    }
+
+    private static void assertSameTask(Task expected, Task actual) {
+        assertEquals(expected.getTask(), actual.getTask());
+        assertEquals(expected.getDetails(), actual.getDetails());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.isCompleted(), actual.isCompleted());
+        assertEquals(expected.getCompletedAt(), actual.getCompletedAt());
+        assertEquals(expected.getTaskHlc(), actual.getTaskHlc());
+        assertEquals(expected.getDetailsHlc(), actual.getDetailsHlc());
+        assertEquals(expected.getDateHlc(), actual.getDateHlc());
+        assertEquals(expected.getCompletedHlc(), actual.getCompletedHlc());
+        assertEquals(expected.getContentHash(), actual.getContentHash());
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.task;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.StaggeredGridLayoutManager;
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.task.arch.Task;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskRoomDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.Executor;
+
+/**
+ * Scroll and bind cost of TaskListAdapter with the linear and the staggered
+ * layout of MainActivity.
+ *
+ * The list is a RecyclerView laid out at phone size outside of a window, so the
+ * numbers are the layout and bind work of a frame, without drawing.
+ * Besides the androidx.benchmark report, the scroll test reports the percentiles
+ * of the time per scroll step and the allocations per bind. They are printed to
+ * the log, sent as instrumentation status and written as JSON next to the report.
+ */
+@RunWith(Parameterized.class)
+public class TaskListAdapterBenchmark {
+
+    private static final String TAG = "TaskListBenchmark";
+    private static final int ROW_COUNT = 5000;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int SCROLL_STEP = 60;
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    @Parameterized.Parameters(name = "layout={0}")
+    public static Collection<Object[]> layouts() {
+        return Arrays.asList(new Object[][]{{"linear"}, {"staggered"}});
+    }
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final String mLayout;
+    private final Instrumentation mInstrumentation = InstrumentationRegistry.getInstrumentation();
+    private TaskRoomDatabase mDb;
+    private CountingAdapter mAdapter;
+    private RecyclerView mRecyclerView;
+
+    public TaskListAdapterBenchmark(String layout) {
+        this.mLayout = layout;
+    }
+
+    @Before
+    public void setUp() {
+        final Context context = new ContextThemeWrapper(mInstrumentation.getTargetContext(),
+                R.style.AppTheme);
+        mDb = Room.inMemoryDatabaseBuilder(context, TaskRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        final TaskDao dao = mDb.taskDao();
+        mDb.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    // Vary the row heights like real notes do.
+                    StringBuilder details = new StringBuilder("Details of task ").append(i);
+                    for (int line = 0; line < i % 4; line++) {
+                        details.append("\nMore details on another line");
+                    }
+                    Date date = i % 3 == 0 ? null : new Date(i * 60000L);
+                    dao.insert(new Task("Task " + i, details.toString(), date));
+                }
+            }
+        });
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // Load every task up front: the benchmark measures the list,
+                // not the paging, and a page arriving during a scroll step
+                // would notify the adapter in the middle of the layout.
+                PagedList.Config config = new PagedList.Config.Builder()
+                        .setPageSize(TaskViewModel.PAGE_SIZE)
+                        .setPrefetchDistance(TaskViewModel.PREFETCH_DISTANCE)
+                        .setInitialLoadSizeHint(ROW_COUNT)
+                        .setEnablePlaceholders(false)
+                        .build();
+                PagedList<Task> tasks = new PagedList.Builder<>(
+                        dao.getPagedTasks().create(), config)
+                        .setFetchExecutor(DIRECT_EXECUTOR)
+                        .setNotifyExecutor(DIRECT_EXECUTOR)
+                        .build();
+
+                mAdapter = new CountingAdapter(TaskDateFormatter.getInstance(context));
+                mAdapter.submitList(tasks);
+
+                mRecyclerView = new RecyclerView(context);
+                mRecyclerView.setLayoutParams(new FrameLayout.LayoutParams(WIDTH, HEIGHT));
+                mRecyclerView.setHasFixedSize(true);
+                if (mLayout.equals("linear")) {
+                    mRecyclerView.setLayoutManager(new LinearLayoutManager(context));
+                } else {
+                    mRecyclerView.setLayoutManager(new StaggeredGridLayoutManager(2,
+                            StaggeredGridLayoutManager.VERTICAL));
+                }
+                mRecyclerView.setAdapter(mAdapter);
+                layout();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void createViewHolder() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                while (state.keepRunning()) {
+                    mAdapter.onCreateViewHolder(mRecyclerView, 0);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void bindViewHolder() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TaskListAdapter.TaskViewHolder holder =
+                        mAdapter.onCreateViewHolder(mRecyclerView, 0);
+                int loaded = mAdapter.getItemCount();
+                int position = 0;
+                while (state.keepRunning()) {
+                    mAdapter.onBindViewHolder(holder, position);
+                    position = (position + 1) % loaded;
+                }
+            }
+        });
+    }
+
+    /**
+     * Scrolls through the list a step at a time, like a fling would frame by frame,
+     * and starts again from the top at the end of the list.
+     */
+    @Test
+    public void scroll() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final long[][] stepNanos = {new long[1024]};
+        final int[] steps = new int[1];
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                while (state.keepRunning()) {
+                    long start = SystemClock.elapsedRealtimeNanos();
+                    mRecyclerView.scrollBy(0, SCROLL_STEP);
+                    layout();
+                    long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+
+                    state.pauseTiming();
+                    if (steps[0] == stepNanos[0].length) {
+                        stepNanos[0] = Arrays.copyOf(stepNanos[0], steps[0] * 2);
+                    }
+                    stepNanos[0][steps[0]++] = elapsed;
+                    if (!mRecyclerView.canScrollVertically(1)) {
+                        mRecyclerView.scrollToPosition(0);
+                        layout();
+                    }
+                    state.resumeTiming();
+                }
+                Debug.stopAllocCounting();
+            }
+        });
+
+        report(Arrays.copyOf(stepNanos[0], steps[0]));
+    }
+
+    private void layout() {
+        mRecyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mRecyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private void report(long[] stepNanos) {
+        int binds = mAdapter.mBindCount;
+        long allocations = mAdapter.mBindAllocations;
+        long[] sorted = stepNanos.clone();
+        Arrays.sort(sorted);
+        long p50 = percentile(sorted, 50);
+        long p90 = percentile(sorted, 90);
+        long p99 = percentile(sorted, 99);
+        long max = sorted[sorted.length - 1];
+        double allocationsPerBind = binds > 0 ? (double) allocations / binds : 0;
+
+        String json = "{\"layout\": \"" + mLayout + "\", "
+                + "\"rows\": " + ROW_COUNT + ", "
+                + "\"steps\": " + stepNanos.length + ", "
+                + "\"stepNanos\": {\"p50\": " + p50 + ", \"p90\": " + p90
+                + ", \"p99\": " + p99 + ", \"max\": " + max + "}, "
+                + "\"binds\": " + binds + ", "
+                + "\"allocationsPerBind\": " + allocationsPerBind + "}";
+        Log.i(TAG, json);
+
+        Bundle status = new Bundle();
+        status.putString(TAG, json);
+        mInstrumentation.sendStatus(0, status);
+
+        String outputDir = InstrumentationRegistry.getArguments()
+                .getString("additionalTestOutputDir");
+        if (outputDir != null) {
+            File file = new File(outputDir, "task_list_scroll_" + mLayout + ".json");
+            try (FileWriter writer = new FileWriter(file)) {
+                writer.write(json);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not write " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Counts the binds, and the objects allocated by them while
+     * allocation counting is on.
+     */
+    private static class CountingAdapter extends TaskListAdapter {
+        int mBindCount;
+        long mBindAllocations;
+
+        CountingAdapter(TaskDateFormatter dateFormatter) {
+            super(dateFormatter);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull TaskViewHolder holder, int position) {
+            long allocationsBefore = Debug.getThreadAllocCount();
+            super.onBindViewHolder(holder, position);
+            mBindAllocations += Debug.getThreadAllocCount() - allocationsBefore;
+            mBindCount++;
+        }
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.task.benchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.task.arch.DateConverter;
+import com.example.task.arch.Task;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskRoomDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Write latency of TaskDao on an in-memory TaskRoomDatabase,
+ * and the cost of the DateConverter used for every row.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskDaoBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int IMPORT_SIZE = 50000;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private TaskRoomDatabase mDb;
+    private TaskDao mDao;
+
+    @Before
+    public void createDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, TaskRoomDatabase.class).build();
+        mDao = mDb.taskDao();
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+    }
+
+    /**
+     * One insert, committed on its own.
+     */
+    @Test
+    public void insertSingle() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            mDao.insert(newTask(i++));
+        }
+    }
+
+    /**
+     * BATCH_SIZE inserts committed by a single transaction.
+     */
+    @Test
+    public void insertBatch() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        final int[] next = new int[1];
+        Runnable batch = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    mDao.insert(newTask(next[0]++));
+                }
+            }
+        };
+        while (state.keepRunning()) {
+            mDb.runInTransaction(batch);
+        }
+    }
+
+    /**
+     * An import of IMPORT_SIZE tasks through the list insert, then removed by id.
+     */
+    @Test
+    public void importList() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        List<Task> tasks = new ArrayList<>(IMPORT_SIZE);
+        for (int i = 0; i < IMPORT_SIZE; i++) {
+            tasks.add(newTask(i));
+        }
+        while (state.keepRunning()) {
+            List<Long> ids = mDao.insert(tasks);
+
+            state.pauseTiming();
+            List<Integer> intIds = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                intIds.add(id.intValue());
+            }
+            state.resumeTiming();
+
+            mDao.deleteByIds(intIds);
+        }
+    }
+
+    @Test
+    public void update() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        int id = (int) mDao.insert(newTask(0));
+        int i = 0;
+        while (state.keepRunning()) {
+            mDao.update(new Task(id, "Task " + i, "Details " + i, new Date(i)));
+            i++;
+        }
+    }
+
+    @Test
+    public void delete() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            Task task = newTask(i++);
+            task.setId((int) mDao.insert(task));
+            state.resumeTiming();
+
+            mDao.delete(task);
+        }
+    }
+
+    @Test
+    public void dateConverter_roundTrip() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        long timestamp = System.currentTimeMillis();
+        while (state.keepRunning()) {
+            Date date = DateConverter.toDate(timestamp);
+            timestamp = DateConverter.toTimestamp(date) + 1;
+        }
+    }
+
+    private static Task newTask(int i) {
+        return new Task("Task " + i, "Details of task " + i, new Date(i * 60000L));
+    }
+}
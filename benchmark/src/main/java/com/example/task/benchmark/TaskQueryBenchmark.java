@@ -0,0 +1,106 @@
+package com.example.task.benchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.task.arch.Task;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskRoomDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Read cost of the task list at 1k, 10k and 100k tasks:
+ * the whole list, the first page and a page in the middle of the list.
+ */
+@RunWith(Parameterized.class)
+public class TaskQueryBenchmark {
+
+    private static final int PAGE_SIZE = 30;
+
+    @Parameterized.Parameters(name = "rows={0}")
+    public static Collection<Object[]> rowCounts() {
+        return Arrays.asList(new Object[][]{{1000}, {10000}, {100000}});
+    }
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mRowCount;
+    private TaskRoomDatabase mDb;
+    private TaskDao mDao;
+
+    public TaskQueryBenchmark(int rowCount) {
+        this.mRowCount = rowCount;
+    }
+
+    @Before
+    public void populateDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, TaskRoomDatabase.class).build();
+        mDao = mDb.taskDao();
+        mDb.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < mRowCount; i++) {
+                    Date date = i % 10 == 0 ? null : new Date((i * 7919L) % (mRowCount * 10L));
+                    mDao.insert(new Task("Task " + i, "Details of task " + i, date));
+                }
+            }
+        });
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+    }
+
+    /**
+     * Reads every task in list order, what a full list LiveData did on each change.
+     */
+    @Test
+    public void getAllTasks() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mDao.getFirstTasks(mRowCount);
+        }
+    }
+
+    @Test
+    public void getFirstPage() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mDao.getFirstTasks(PAGE_SIZE);
+        }
+    }
+
+    /**
+     * A page after the task in the middle of the list, found through the keyset.
+     */
+    @Test
+    public void getMiddlePage() {
+        List<Task> firstHalf = mDao.getFirstTasks(mRowCount / 2);
+        Task anchor = firstHalf.get(firstHalf.size() - 1);
+        long date = anchor.getDate().getTime();
+        int id = anchor.getId();
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mDao.getListItemsAfter(date, id, PAGE_SIZE);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.task.benchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.room.RoomDatabase;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.task.arch.Task;
+import com.example.task.arch.TaskDao;
+import com.example.task.arch.TaskRoomDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Latency of the first page of the list while a bulk import is writing,
+ * with the rollback journal and with WAL.
+ *
+ * With the rollback journal the read waits for each write transaction.
+ * With WAL it reads the last committed state and does not wait.
+ */
+@RunWith(Parameterized.class)
+public class TaskStorageBenchmark {
+
+    private static final String DB_NAME = "storage_benchmark.db";
+    private static final int INITIAL_ROWS = 10000;
+    private static final int IMPORT_BATCH_SIZE = 500;
+    private static final int PAGE_SIZE = 30;
+
+    @Parameterized.Parameters(name = "journal={0}")
+    public static Collection<Object[]> journalModes() {
+        return Arrays.asList(new Object[][]{
+                {RoomDatabase.JournalMode.TRUNCATE},
+                {RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING}});
+    }
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final RoomDatabase.JournalMode mJournalMode;
+    private Context mContext;
+    private TaskRoomDatabase mDb;
+    private TaskDao mDao;
+    private Thread mImport;
+    private volatile boolean mImporting;
+
+    public TaskStorageBenchmark(RoomDatabase.JournalMode journalMode) {
+        this.mJournalMode = journalMode;
+    }
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DB_NAME);
+        TaskRoomDatabase.StorageConfig defaults = TaskRoomDatabase.StorageConfig.DEFAULT;
+        TaskRoomDatabase.StorageConfig config = new TaskRoomDatabase.StorageConfig(mJournalMode,
+                defaults.synchronous, defaults.cacheSizeKib, defaults.walAutoCheckpoint,
+                defaults.journalSizeLimit, defaults.readerThreads);
+        mDb = TaskRoomDatabase.createBuilder(mContext, DB_NAME, config).build();
+        mDao = mDb.taskDao();
+        insertBatch(0, INITIAL_ROWS);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mImporting = false;
+        if (mImport != null) {
+            mImport.join();
+        }
+        mDb.close();
+        mContext.deleteDatabase(DB_NAME);
+    }
+
+    /**
+     * The first page alone, as a baseline.
+     */
+    @Test
+    public void firstPage() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mDao.getFirstTasks(PAGE_SIZE);
+        }
+    }
+
+    /**
+     * The first page while another thread imports tasks in batches of IMPORT_BATCH_SIZE.
+     */
+    @Test
+    public void firstPage_duringImport() {
+        mImporting = true;
+        mImport = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int next = INITIAL_ROWS;
+                while (mImporting) {
+                    insertBatch(next, IMPORT_BATCH_SIZE);
+                    next += IMPORT_BATCH_SIZE;
+                }
+            }
+        }, "import");
+        mImport.start();
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mDao.getFirstTasks(PAGE_SIZE);
+        }
+    }
+
+    private void insertBatch(final int first, final int count) {
+        mDb.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = first; i < first + count; i++) {
+                    mDao.insert(new Task("Task " + i, "Details of task " + i,
+                            new Date(i * 60000L)));
+                }
+            }
+        });
+    }
+}